@@ -2,8 +2,11 @@ package com.khalchukov.labs;
 
 import com.khalchukov.labs.model.Character;
 import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.service.BulkImportService;
 import com.khalchukov.labs.service.CharacterCrudService;
+import com.khalchukov.labs.service.DatasetRegistry;
 import com.khalchukov.labs.service.GenderCountService;
+import com.khalchukov.labs.service.GenderStatsHistory;
 
 
 import java.io.IOException;
@@ -21,8 +24,12 @@ import java.util.Scanner;
 public class Main {
 
     private static final Scanner SCANNER = new Scanner(System.in);
-    private static CharacterCrudService crud;
+    /** Бюджет памяти на загруженные наборы данных, МБ (-Ddatasets.maxMb=…). */
+    private static final long DATASETS_MAX_MB = Long.getLong("datasets.maxMb", 256);
+    private static DatasetRegistry registry;
     private static GenderCountService genderService;
+    /** Наибольший период для тренда по истории статистики, часов (10 лет). */
+    private static final int MAX_TREND_HOURS = 24 * 365 * 10;
     private static Path csvPath;
     private static Path workDir;
 
@@ -40,7 +47,7 @@ public class Main {
         csvPath = workDir.resolve("characters.csv");
         Files.copy(Paths.get(resource.toURI()), csvPath, StandardCopyOption.REPLACE_EXISTING);
 
-        crud = new CharacterCrudService(csvPath);
+        registry = new DatasetRegistry(DATASETS_MAX_MB * 1024 * 1024);
         genderService = new GenderCountService();
 
 
@@ -57,6 +64,9 @@ public class Main {
                 case "4" -> createCharacter();
                 case "5" -> updateCharacter();
                 case "6" -> deleteCharacter();
+                case "7" -> switchDataset();
+                case "8" -> importCharacters();
+                case "9" -> showStatsHistory();
                 case "0" -> {
                     running = false;
                     System.out.println("До свидания!");
@@ -81,16 +91,72 @@ public class Main {
         System.out.println("│  1. Показать всех персонажей        │");
         System.out.println("│  2. Найти по ID                     │");
         System.out.println("│  3. Статистика по полу (EnumMap)    │");
-        System.out.println("│     (показывает и сохраняет в файл) │");
+        System.out.println("│     (показывает и пишет в историю)  │");
         System.out.println("│  4. Добавить персонажа   [CREATE]   │");
         System.out.println("│  5. Обновить персонажа   [UPDATE]   │");
         System.out.println("│  6. Удалить персонажа    [DELETE]   │");
+        System.out.println("│  7. Сменить набор данных            │");
+        System.out.println("│  8. Импорт из CSV-файла  [BULK]     │");
+        System.out.println("│  9. История статистики (тренд)      │");
         System.out.println("│  0. Выход                           │");
         System.out.println("└─────────────────────────────────────┘");
     }
 
+    /** Текущий набор данных; обращение через реестр учитывается в его кэше. */
+    private static CharacterCrudService crud() throws IOException {
+        return registry.get(csvPath);
+    }
+
+    private static void switchDataset() throws IOException {
+        System.out.println("Текущий набор: " + csvPath);
+        String raw = prompt("Путь к CSV-файлу (Enter — оставить текущий)").trim();
+        if (raw.isEmpty()) {
+            System.out.println("Реестр: " + registry.stats());
+            return;
+        }
+        Path path = Paths.get(raw);
+        if (!Files.isRegularFile(path)) {
+            System.out.println("Файл не найден: " + path);
+            return;
+        }
+        int size;
+        try {
+            size = registry.get(path).snapshot().size();
+        } catch (IOException e) {
+            // Например, повторяющиеся ID — остаёмся на текущем наборе
+            System.out.println("Не удалось загрузить набор: " + e.getMessage());
+            return;
+        }
+        csvPath = path;
+        System.out.printf("Набор данных: %s (%d персонажей)%n", csvPath, size);
+        System.out.println("Реестр: " + registry.stats());
+    }
+
+    private static void importCharacters() throws IOException {
+        System.out.println("── Массовый импорт персонажей ──");
+        Path source = Paths.get(promptRequired("Путь к CSV-файлу"));
+        if (!Files.isRegularFile(source)) {
+            System.out.println("Файл не найден: " + source);
+            return;
+        }
+        BulkImportService importer = new BulkImportService(crud(), BulkImportService.Options.defaults());
+        try {
+            // Итог печатает сам сервис: "[IMPORT] Прочитано: …"
+            importer.importCsv(source);
+        } catch (BulkImportService.ImportFailedException e) {
+            BulkImportService.ImportResult partial = e.partialResult();
+            System.out.println(e.getMessage());
+            System.out.printf("Уже сохранено (останется в наборе): добавлено %d в %d пакетах, "
+                            + "дубликатов %d, отброшено %d, прочитано %d%n",
+                    partial.imported(), partial.batches(), partial.duplicates(),
+                    partial.rejected(), partial.read());
+        } catch (IOException e) {
+            System.out.println("Не удалось прочитать файл импорта: " + e.getMessage());
+        }
+    }
+
     private static void showAll() throws IOException {
-        List<Character> all = crud.findAll();
+        List<Character> all = crud().snapshot().characters();
         if (all.isEmpty()) {
             System.out.println("Список персонажей пуст.");
             return;
@@ -108,7 +174,7 @@ public class Main {
 
     private static void findById() throws IOException {
         int id = readInt("Введите ID персонажа");
-        Optional<Character> found = crud.findById(id);
+        Optional<Character> found = crud().findById(id);
         if (found.isPresent()) {
             printCharacterDetails(found.get());
         } else {
@@ -116,21 +182,50 @@ public class Main {
         }
     }
 
+    /** История статистики текущего набора данных (у каждого CSV — своя). */
+    private static GenderStatsHistory statsHistory() {
+        return GenderStatsHistory.forDataset(workDir, csvPath);
+    }
+
     private static void showAndSaveGenderStats() throws IOException {
-        List<Character> all = crud.findAll();
+        List<Character> all = crud().snapshot().characters();
         EnumMap<Gender, Integer> counts = genderService.countByGender(all);
 
         genderService.printResult(counts);
-        String timestamp = java.time.LocalDateTime.now()
-                .format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        Path statsPath = workDir.resolve("gender_stats_" + timestamp + ".txt");
-        genderService.saveStatsToFile(statsPath, counts);
+        GenderStatsHistory history = statsHistory();
+        history.append(counts);
+        System.out.println("Снимок добавлен в историю: " + history.getFile().getFileName());
+    }
+
+    private static void showStatsHistory() throws IOException {
+        GenderStatsHistory history = statsHistory();
+        Optional<GenderStatsHistory.StatsPoint> latest = history.latest();
+        if (latest.isEmpty()) {
+            System.out.println("История статистики пуста. Сначала выполните пункт 3.");
+            return;
+        }
+        System.out.println("Снимков в истории: " + history.size());
+
+        int hours = readHours("За сколько часов показать изменения (Enter — 24)", 24);
+
+        java.time.Instant to = java.time.Instant.now();
+        history.delta(to.minus(java.time.Duration.ofHours(hours)), to)
+                .ifPresentOrElse(genderService::printTrend,
+                        () -> System.out.println("За указанный период снимков нет."));
+
+        String confirm = prompt("Сохранить текстовый отчёт по последнему снимку? (да/нет)").trim().toLowerCase();
+        if (confirm.equals("да") || confirm.equals("д") || confirm.equals("y") || confirm.equals("yes")) {
+            String timestamp = java.time.LocalDateTime.now()
+                    .format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            Path statsPath = workDir.resolve("gender_stats_" + timestamp + ".txt");
+            genderService.saveReportToFile(statsPath, latest.get());
+            System.out.println("Отчёт сохранён: " + statsPath);
+        }
     }
 
     private static void saveStatsOnExit() throws IOException {
-        EnumMap<Gender, Integer> counts = genderService.countByGender(crud.findAll());
-        Path statsPath = workDir.resolve("gender_stats_final.txt");
-        genderService.saveStatsToFile(statsPath, counts);
+        EnumMap<Gender, Integer> counts = genderService.countByGender(crud().snapshot().characters());
+        statsHistory().append(counts);
     }
 
     private static void createCharacter() throws IOException {
@@ -143,7 +238,7 @@ public class Main {
         String originName = promptWithHint("Место происхождения", "Earth (C-137) / unknown …");
         String locationName = promptWithHint("Текущая локация", "Earth (C-137) / unknown …");
 
-        Character created = crud.create(name, status, species, type,
+        Character created = crud().create(name, status, species, type,
                 gender, originName, locationName);
         System.out.println("\n Персонаж успешно создан:");
         printCharacterDetails(created);
@@ -151,7 +246,7 @@ public class Main {
 
     private static void updateCharacter() throws IOException {
         int id = readInt("Введите ID персонажа для обновления");
-        Optional<Character> existing = crud.findById(id);
+        Optional<Character> existing = crud().findById(id);
         if (existing.isEmpty()) {
             System.out.println("Персонаж с ID=" + id + " не найден.");
             return;
@@ -169,7 +264,7 @@ public class Main {
         String originName = promptOptional("Место происхождения", existing.get().getOriginName());
         String locationName = promptOptional("Текущая локация", existing.get().getLocationName());
 
-        crud.update(id, name, status, species, type, gender, originName, locationName)
+        crud().update(id, name, status, species, type, gender, originName, locationName)
                 .ifPresent(c -> {
                     System.out.println("\n Обновлено:");
                     printCharacterDetails(c);
@@ -178,7 +273,7 @@ public class Main {
 
     private static void deleteCharacter() throws IOException {
         int id = readInt("Введите ID персонажа для удаления");
-        Optional<Character> existing = crud.findById(id);
+        Optional<Character> existing = crud().findById(id);
         if (existing.isEmpty()) {
             System.out.println("Персонаж с ID=" + id + " не найден.");
             return;
@@ -189,7 +284,7 @@ public class Main {
         String confirm = prompt("Подтвердить удаление? (да/нет)").trim().toLowerCase();
 
         if (confirm.equals("да") || confirm.equals("д") || confirm.equals("y") || confirm.equals("yes")) {
-            crud.delete(id);
+            crud().delete(id);
             System.out.println(" Персонаж удалён.");
         } else {
             System.out.println("Удаление отменено.");
@@ -274,6 +369,21 @@ public class Main {
         }
     }
 
+    private static int readHours(String label, int defaultHours) {
+        while (true) {
+            System.out.print("  " + label + ": ");
+            String raw = SCANNER.nextLine().trim();
+            if (raw.isEmpty()) return defaultHours;
+            try {
+                int hours = Integer.parseInt(raw);
+                if (hours > 0 && hours <= MAX_TREND_HOURS) return hours;
+            } catch (NumberFormatException e) {
+                // ниже — общее сообщение
+            }
+            System.out.println("  Введите целое число от 1 до " + MAX_TREND_HOURS + ".");
+        }
+    }
+
     private static String truncate(String s, int maxLen) {
         if (s == null) return "";
         return s.length() <= maxLen ? s : s.substring(0, maxLen - 1) + "…";
@@ -0,0 +1,102 @@
+package com.khalchukov.labs.bench;
+
+/**
+ * Простая лог-линейная гистограмма задержек (в наносекундах).
+ *
+ * <p>Диапазон значений делится на «порядки» (степени двойки), каждый порядок —
+ * на {@value #SUB_BUCKETS} равных под-корзин, поэтому относительная погрешность
+ * перцентилей не превышает ~3%. Память фиксирована и не зависит от числа замеров.
+ *
+ * <p>Класс НЕ потокобезопасен: каждый клиент пишет в свою гистограмму,
+ * а в конце прогона они объединяются через {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+
+    private final long[] buckets = new long[64 * SUB_BUCKETS];
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private long sum;
+
+    /**
+     * Записывает одно значение задержки.
+     *
+     * @param nanos задержка в наносекундах (отрицательные значения считаются нулём)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[indexOf(value)]++;
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Добавляет к этой гистограмме все замеры из другой.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        sum   += other.sum;
+        min    = Math.min(min, other.min);
+        max    = Math.max(max, other.max);
+    }
+
+    /**
+     * Возвращает значение перцентиля (верхнюю границу соответствующей корзины).
+     *
+     * @param percentile перцентиль в диапазоне 0..100
+     * @return задержка в наносекундах или 0, если замеров нет
+     */
+    public long percentile(double percentile) {
+        if (count == 0) return 0;
+        long target = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        if (target < 1) target = 1;
+
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return Math.min(max, upperBoundOf(i));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() { return count; }
+    public long getMin()   { return count == 0 ? 0 : min; }
+    public long getMax()   { return max; }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    // ──────────────────── Индексация корзин ────────────────────
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift     = magnitude - SUB_BUCKET_BITS;
+        int sub       = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int index) {
+        int group = index / SUB_BUCKETS;
+        int sub   = index % SUB_BUCKETS;
+        if (group == 0) {
+            return sub;
+        }
+        int shift = group - 1;
+        long lower = ((long) (SUB_BUCKETS + sub)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
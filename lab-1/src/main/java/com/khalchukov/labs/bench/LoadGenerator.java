@@ -0,0 +1,478 @@
+package com.khalchukov.labs.bench;
+
+import com.khalchukov.labs.model.Character;
+import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.service.CharacterCrudService;
+import com.khalchukov.labs.service.GenderCountService;
+import com.khalchukov.labs.util.CsvParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Генератор смешанной нагрузки для {@link CharacterCrudService}.
+ *
+ * <p>Запускает N конкурентных клиентов (платформенные или виртуальные потоки),
+ * которые выполняют заданную смесь операций над сгенерированным набором данных.
+ * Нагрузка подаётся в режиме <b>open-loop</b>: у каждого клиента есть расписание
+ * «запланированных» моментов запуска с заданной частотой, и задержка считается
+ * от запланированного момента, а не от фактического старта запроса. Так
+ * исправляется coordinated omission — если сервис «залип», все запросы, которые
+ * должны были уйти за это время, честно получают большую задержку.
+ *
+ * <p>Пример запуска:
+ * <pre>
+ *   java -cp lab-1.jar com.khalchukov.labs.bench.LoadGenerator \
+ *        --clients 16 --threads virtual --rate 500 --duration 30 \
+ *        --dataset 5000 --mix findById=50,findAll=5,create=10,update=20,delete=5,count=10 \
+ *        --label csv --report output/load_report.txt
+ * </pre>
+ */
+public class LoadGenerator {
+
+    /** Тип потоков для клиентов. */
+    public enum ThreadMode { PLATFORM, VIRTUAL }
+
+    /**
+     * Параметры прогона.
+     *
+     * @param clients      число конкурентных клиентов
+     * @param threadMode   платформенные или виртуальные потоки
+     * @param ratePerSec   суммарная целевая частота запросов (на всех клиентов)
+     * @param durationSec  длительность измеряемой фазы
+     * @param warmupSec    длительность прогрева (замеры не учитываются)
+     * @param datasetSize  число персонажей в сгенерированном наборе
+     * @param mix          веса операций
+     * @param seed         seed генератора случайных чисел
+     * @param label        метка прогона (например, режим хранилища) для отчёта
+     * @param reportPath   куда сохранить отчёт (или null)
+     */
+    public record Config(int clients, ThreadMode threadMode, double ratePerSec,
+                         int durationSec, int warmupSec, int datasetSize,
+                         EnumMap<Operation, Integer> mix, long seed,
+                         String label, Path reportPath) {
+
+        public static Config defaults() {
+            EnumMap<Operation, Integer> mix = new EnumMap<>(Operation.class);
+            mix.put(Operation.FIND_BY_ID,   50);
+            mix.put(Operation.FIND_ALL,      5);
+            mix.put(Operation.CREATE,       10);
+            mix.put(Operation.UPDATE,       20);
+            mix.put(Operation.DELETE,        5);
+            mix.put(Operation.GENDER_COUNT, 10);
+            return new Config(8, ThreadMode.PLATFORM, 200, 30, 5, 1000,
+                    mix, 42L, "default", null);
+        }
+    }
+
+    private static final int WARMUP_PHASE   = 0;
+    private static final int MEASURED_PHASE = 1;
+
+    private final Config config;
+    private final CharacterCrudService crud;
+    private final GenderCountService genderService = new GenderCountService();
+    private final Operation[] opTable;
+    private final AtomicInteger maxKnownId;
+
+    public LoadGenerator(Config config, CharacterCrudService crud, int initialMaxId) {
+        this.config     = config;
+        this.crud       = crud;
+        this.opTable    = buildOpTable(config.mix());
+        this.maxKnownId = new AtomicInteger(initialMaxId);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = parseArgs(args);
+
+        Path dataDir = Files.createTempDirectory("load-gen");
+        String report;
+        try {
+            Path csvPath = dataDir.resolve("characters.csv");
+            generateDataset(csvPath, config.datasetSize(), config.seed());
+
+            LoadGenerator generator = new LoadGenerator(config,
+                    new CharacterCrudService(csvPath), config.datasetSize());
+            report = generator.run();
+        } finally {
+            deleteRecursively(dataDir);
+        }
+
+        System.out.println(report);
+        if (config.reportPath() != null) {
+            Path parent = config.reportPath().toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.writeString(config.reportPath(), report, StandardCharsets.UTF_8);
+            System.out.println("Отчёт сохранён: " + config.reportPath());
+        }
+    }
+
+    // ══════════════════════════════════════════════
+    //  ПРОГОН
+    // ══════════════════════════════════════════════
+
+    /**
+     * Выполняет прогрев и измеряемую фазу, возвращает текстовый отчёт.
+     * На время прогона консольный вывод сервисов подавляется.
+     */
+    public String run() throws InterruptedException {
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        originalOut.printf("Прогрев %d с, измерение %d с, клиентов: %d (%s), rate=%.1f op/s%n",
+                config.warmupSec(), config.durationSec(), config.clients(),
+                config.threadMode(), config.ratePerSec());
+
+        System.setOut(sink);
+        System.setErr(sink);
+        try {
+            if (config.warmupSec() > 0) {
+                runPhase(WARMUP_PHASE, config.warmupSec());
+            }
+            PhaseResult result = runPhase(MEASURED_PHASE, config.durationSec());
+            return formatReport(result);
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+    }
+
+    /**
+     * @param phase номер фазы; входит в seed клиентов, чтобы измеряемая фаза
+     *              не повторяла последовательность операций прогрева
+     *              (иначе update/delete попадали бы в уже удалённые ID)
+     */
+    private PhaseResult runPhase(int phase, int seconds) throws InterruptedException {
+        int clients = config.clients();
+        long intervalNanos = (long) (1_000_000_000L * clients / config.ratePerSec());
+        long startNanos = System.nanoTime() + 10_000_000L; // небольшой запас на старт потоков
+        long endNanos   = startNanos + seconds * 1_000_000_000L;
+
+        ClientStats[] stats = new ClientStats[clients];
+        List<Thread> threads = new ArrayList<>(clients);
+        ThreadFactory factory = threadFactory();
+
+        for (int i = 0; i < clients; i++) {
+            ClientStats clientStats = new ClientStats();
+            stats[i] = clientStats;
+            // Разносим клиентов по фазе, чтобы запросы не приходили «пачками»
+            long offset = intervalNanos * i / clients;
+            SplittableRandom random = new SplittableRandom(config.seed() + ((long) phase << 32) + i);
+            Thread t = factory.newThread(() ->
+                    clientLoop(startNanos + offset, endNanos, intervalNanos, random, clientStats));
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        // При перегрузке клиенты дорабатывают отставание после endNanos —
+        // считаем пропускную способность по фактическому времени фазы
+        long finishedNanos = Math.max(endNanos, System.nanoTime());
+        PhaseResult result = new PhaseResult(finishedNanos - startNanos);
+        for (ClientStats s : stats) {
+            result.merge(s);
+        }
+        return result;
+    }
+
+    private void clientLoop(long firstNanos, long endNanos, long intervalNanos,
+                            SplittableRandom random, ClientStats stats) {
+        long intended = firstNanos;
+        while (intended < endNanos) {
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+
+            Operation op = opTable[random.nextInt(opTable.length)];
+            long actualStart = System.nanoTime();
+            boolean ok;
+            try {
+                execute(op, random);
+                ok = true;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long done = System.nanoTime();
+
+            stats.record(op, done - intended, done - actualStart, ok);
+            intended += intervalNanos;
+        }
+    }
+
+    private void execute(Operation op, SplittableRandom random) throws IOException {
+        switch (op) {
+            case FIND_BY_ID -> crud.findById(randomId(random));
+            case FIND_ALL   -> crud.findAll();
+            case CREATE     -> {
+                Character c = crud.create("Load " + random.nextInt(1_000_000), "Alive", "Human",
+                        "", randomGender(random), "Earth (C-137)", "Citadel of Ricks");
+                maxKnownId.accumulateAndGet(c.getId(), Math::max);
+            }
+            case UPDATE     -> crud.update(randomId(random), null, random.nextBoolean() ? "Alive" : "Dead",
+                    null, null, null, null, "Location " + random.nextInt(100));
+            case DELETE     -> crud.delete(randomId(random));
+            case GENDER_COUNT -> genderService.countByGender(crud.snapshot().characters());
+        }
+    }
+
+    private int randomId(SplittableRandom random) {
+        return 1 + random.nextInt(Math.max(1, maxKnownId.get()));
+    }
+
+    private static Gender randomGender(SplittableRandom random) {
+        Gender[] genders = Gender.values();
+        return genders[random.nextInt(genders.length)];
+    }
+
+    private ThreadFactory threadFactory() {
+        return switch (config.threadMode()) {
+            case PLATFORM -> Thread.ofPlatform().name("load-client-", 0).factory();
+            case VIRTUAL  -> Thread.ofVirtual().name("load-client-", 0).factory();
+        };
+    }
+
+    private static Operation[] buildOpTable(Map<Operation, Integer> mix) {
+        List<Operation> table = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                table.add(entry.getKey());
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("Смесь операций пуста: укажите хотя бы один ненулевой вес");
+        }
+        return table.toArray(new Operation[0]);
+    }
+
+    // ══════════════════════════════════════════════
+    //  СТАТИСТИКА
+    // ══════════════════════════════════════════════
+
+    /** Замеры одного клиента: пишутся без синхронизации, объединяются после join(). */
+    private static final class ClientStats {
+        final EnumMap<Operation, LatencyHistogram> latency = new EnumMap<>(Operation.class);
+        final EnumMap<Operation, LatencyHistogram> service = new EnumMap<>(Operation.class);
+        final EnumMap<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+        ClientStats() {
+            for (Operation op : Operation.values()) {
+                latency.put(op, new LatencyHistogram());
+                service.put(op, new LatencyHistogram());
+                errors.put(op, 0L);
+            }
+        }
+
+        void record(Operation op, long latencyNanos, long serviceNanos, boolean ok) {
+            latency.get(op).record(latencyNanos);
+            service.get(op).record(serviceNanos);
+            if (!ok) errors.merge(op, 1L, Long::sum);
+        }
+    }
+
+    private static final class PhaseResult {
+        final long elapsedNanos;
+        final ClientStats total = new ClientStats();
+
+        PhaseResult(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        void merge(ClientStats s) {
+            for (Operation op : Operation.values()) {
+                total.latency.get(op).add(s.latency.get(op));
+                total.service.get(op).add(s.service.get(op));
+                total.errors.merge(op, s.errors.get(op), Long::sum);
+            }
+        }
+    }
+
+    // ══════════════════════════════════════════════
+    //  ОТЧЁТ
+    // ══════════════════════════════════════════════
+
+    private String formatReport(PhaseResult result) {
+        StringBuilder sb = new StringBuilder();
+        double seconds = result.elapsedNanos / 1e9;
+
+        LatencyHistogram allLatency = new LatencyHistogram();
+        LatencyHistogram allService = new LatencyHistogram();
+        long allErrors = 0;
+        for (Operation op : Operation.values()) {
+            allLatency.add(result.total.latency.get(op));
+            allService.add(result.total.service.get(op));
+            allErrors += result.total.errors.get(op);
+        }
+
+        sb.append("╔════════════════════════════════════════════════╗\n");
+        sb.append("║            ОТЧЁТ ГЕНЕРАТОРА НАГРУЗКИ           ║\n");
+        sb.append("╚════════════════════════════════════════════════╝\n");
+        sb.append("Метка        : ").append(config.label()).append('\n');
+        sb.append("Дата и время : ").append(Instant.now()).append('\n');
+        sb.append(String.format("Клиенты      : %d (%s)%n", config.clients(), config.threadMode()));
+        sb.append(String.format("Набор данных : %d персонажей%n", config.datasetSize()));
+        sb.append(String.format("Целевой rate : %.1f op/s%n", config.ratePerSec()));
+        sb.append(String.format("Достигнутый  : %.1f op/s за %.1f с (%d операций, %d ошибок)%n%n",
+                allLatency.getCount() / seconds, seconds, allLatency.getCount(), allErrors));
+
+        sb.append("Задержка от запланированного момента (с поправкой на coordinated omission), мс:\n");
+        appendTable(sb, result, result.total.latency, allLatency, seconds);
+        sb.append('\n');
+        sb.append("Время обслуживания (от фактического старта запроса), мс:\n");
+        appendTable(sb, result, result.total.service, allService, seconds);
+        return sb.toString();
+    }
+
+    private static void appendTable(StringBuilder sb, PhaseResult result,
+                                    EnumMap<Operation, LatencyHistogram> histograms,
+                                    LatencyHistogram all, double seconds) {
+        String rowFormat = "│ %-12s │ %8d │ %6d │ %8.1f │ %8.3f │ %8.3f │ %8.3f │ %8.3f │ %9.3f │%n";
+        sb.append("┌──────────────┬──────────┬────────┬──────────┬──────────┬──────────┬──────────┬──────────┬───────────┐\n");
+        sb.append(String.format("│ %-12s │ %8s │ %6s │ %8s │ %8s │ %8s │ %8s │ %8s │ %9s │%n",
+                "ОПЕРАЦИЯ", "КОЛ-ВО", "ОШИБКИ", "OP/S", "P50", "P90", "P99", "P99.9", "MAX"));
+        sb.append("├──────────────┼──────────┼────────┼──────────┼──────────┼──────────┼──────────┼──────────┼───────────┤\n");
+        long totalErrors = 0;
+        for (Operation op : Operation.values()) {
+            LatencyHistogram h = histograms.get(op);
+            long errors = result.total.errors.get(op);
+            totalErrors += errors;
+            if (h.getCount() == 0) continue;
+            sb.append(String.format(rowFormat, op.name(), h.getCount(), errors, h.getCount() / seconds,
+                    ms(h.percentile(50)), ms(h.percentile(90)), ms(h.percentile(99)),
+                    ms(h.percentile(99.9)), ms(h.getMax())));
+        }
+        sb.append("├──────────────┼──────────┼────────┼──────────┼──────────┼──────────┼──────────┼──────────┼───────────┤\n");
+        sb.append(String.format(rowFormat, "ИТОГО", all.getCount(), totalErrors, all.getCount() / seconds,
+                ms(all.percentile(50)), ms(all.percentile(90)), ms(all.percentile(99)),
+                ms(all.percentile(99.9)), ms(all.getMax())));
+        sb.append("└──────────────┴──────────┴────────┴──────────┴──────────┴──────────┴──────────┴──────────┴───────────┘\n");
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // ══════════════════════════════════════════════
+    //  НАБОР ДАННЫХ
+    // ══════════════════════════════════════════════
+
+    /**
+     * Генерирует CSV-файл с {@code size} случайными персонажами (id = 1..size).
+     */
+    public static void generateDataset(Path path, int size, long seed) throws IOException {
+        String[] statuses  = {"Alive", "Dead", "unknown"};
+        String[] species   = {"Human", "Alien", "Robot", "Humanoid", "Cronenberg"};
+        String[] locations = {"Earth (C-137)", "Citadel of Ricks", "Interdimensional Cable", "unknown"};
+        Gender[] genders   = Gender.values();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        String created = Instant.now().toString();
+        List<Character> characters = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            characters.add(new Character(id, "Character " + id,
+                    statuses[random.nextInt(statuses.length)],
+                    species[random.nextInt(species.length)], "",
+                    genders[random.nextInt(genders.length)],
+                    locations[random.nextInt(locations.length)],
+                    locations[random.nextInt(locations.length)],
+                    created));
+        }
+        CsvParser.writeAll(path, characters);
+    }
+
+    /** Удаляет временный каталог с набором данных вместе с содержимым. */
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    // ══════════════════════════════════════════════
+    //  АРГУМЕНТЫ
+    // ══════════════════════════════════════════════
+
+    static Config parseArgs(String[] args) {
+        Config d = Config.defaults();
+        int clients = d.clients();
+        ThreadMode threadMode = d.threadMode();
+        double rate = d.ratePerSec();
+        int duration = d.durationSec();
+        int warmup = d.warmupSec();
+        int dataset = d.datasetSize();
+        EnumMap<Operation, Integer> mix = d.mix();
+        long seed = d.seed();
+        String label = d.label();
+        Path report = d.reportPath();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Не указано значение для " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--clients"  -> clients  = Integer.parseInt(value);
+                case "--threads"  -> threadMode = ThreadMode.valueOf(value.trim().toUpperCase());
+                case "--rate"     -> rate     = Double.parseDouble(value);
+                case "--duration" -> duration = Integer.parseInt(value);
+                case "--warmup"   -> warmup   = Integer.parseInt(value);
+                case "--dataset"  -> dataset  = Integer.parseInt(value);
+                case "--mix"      -> mix      = parseMix(value);
+                case "--seed"     -> seed     = Long.parseLong(value);
+                case "--label"    -> label    = value;
+                case "--report"   -> report   = Paths.get(value);
+                default -> throw new IllegalArgumentException("Неизвестный аргумент: " + arg);
+            }
+        }
+
+        if (clients <= 0 || !(rate > 0) || duration <= 0 || warmup < 0 || dataset <= 0) {
+            throw new IllegalArgumentException(
+                    "clients, rate, duration и dataset должны быть > 0, warmup >= 0");
+        }
+        // Интервал между запросами клиента считается в целых наносекундах
+        if (rate > 1_000_000_000.0 * clients) {
+            throw new IllegalArgumentException(String.format(
+                    "rate не может превышать 1e9 op/s на клиента (%d клиентов): %s", clients, rate));
+        }
+        return new Config(clients, threadMode, rate, duration, warmup, dataset,
+                mix, seed, label, report);
+    }
+
+    /**
+     * Разбирает смесь вида {@code findById=50,findAll=5,create=10}.
+     * Не перечисленные операции получают вес 0.
+     */
+    static EnumMap<Operation, Integer> parseMix(String raw) {
+        EnumMap<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : raw.split(",")) {
+            if (part.isBlank()) continue;
+            String[] kv = part.split("=", 2);
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Вес операции не может быть отрицательным: " + part);
+            }
+            mix.put(Operation.fromString(kv[0]), weight);
+        }
+        return mix;
+    }
+}
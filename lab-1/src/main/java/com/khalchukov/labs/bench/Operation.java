@@ -0,0 +1,36 @@
+package com.khalchukov.labs.bench;
+
+/**
+ * Типы операций, которые генератор нагрузки выполняет
+ * над {@link com.khalchukov.labs.service.CharacterCrudService}.
+ */
+public enum Operation {
+    FIND_BY_ID,
+    FIND_ALL,
+    CREATE,
+    UPDATE,
+    DELETE,
+    GENDER_COUNT;
+
+    /**
+     * Преобразует строку из аргументов командной строки в операцию.
+     * Допускаются как имена констант, так и «короткие» формы
+     * (findById, find-all, count, …).
+     *
+     * @param raw строка из аргумента --mix
+     * @return соответствующая операция
+     * @throws IllegalArgumentException если операция неизвестна
+     */
+    public static Operation fromString(String raw) {
+        String key = raw.trim().toLowerCase().replace("-", "").replace("_", "");
+        return switch (key) {
+            case "findbyid", "byid", "get"  -> FIND_BY_ID;
+            case "findall", "all", "scan"   -> FIND_ALL;
+            case "create", "insert"         -> CREATE;
+            case "update"                   -> UPDATE;
+            case "delete", "remove"         -> DELETE;
+            case "gendercount", "count"     -> GENDER_COUNT;
+            default -> throw new IllegalArgumentException("Неизвестная операция: " + raw);
+        };
+    }
+}
@@ -16,6 +16,9 @@ public class Character {
     private String locationName;
     private String created;
 
+    /** Замороженный объект нельзя изменить (см. {@link #freeze()}). */
+    private boolean frozen;
+
     // ──────────────────── Конструкторы ────────────────────
 
     public Character() {}
@@ -34,6 +37,35 @@ public class Character {
         this.created      = created;
     }
 
+    /** Конструктор копирования. Копия всегда изменяема. */
+    public Character(Character other) {
+        this(other.id, other.name, other.status, other.species, other.type,
+                other.gender, other.originName, other.locationName, other.created);
+    }
+
+    // ──────────────────── Заморозка ────────────────────
+
+    /**
+     * Делает объект неизменяемым: после вызова любой сеттер бросает
+     * {@link UnsupportedOperationException}. Используется для персонажей,
+     * опубликованных в снимке сервиса, которые разделяются между версиями.
+     * Для изменения нужно сделать копию через конструктор копирования.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException(
+                    "Персонаж id=" + id + " опубликован в снимке и не может изменяться; измените копию");
+        }
+    }
+
     // ──────────────────── CSV-хелперы ────────────────────
 
     /** Заголовок CSV. */
@@ -53,29 +85,29 @@ public class Character {
     // ──────────────────── Getters / Setters ────────────────────
 
     public int getId()                       { return id; }
-    public void setId(int id)                { this.id = id; }
+    public void setId(int id)                { checkNotFrozen(); this.id = id; }
 
     public String getName()                  { return name; }
-    public void setName(String name)         { this.name = name; }
+    public void setName(String name)         { checkNotFrozen(); this.name = name; }
 
     public String getStatus()                { return status; }
-    public void setStatus(String status)     { this.status = status; }
+    public void setStatus(String status)     { checkNotFrozen(); this.status = status; }
 
     public String getSpecies()               { return species; }
-    public void setSpecies(String species)   { this.species = species; }
+    public void setSpecies(String species)   { checkNotFrozen(); this.species = species; }
 
     public String getType()                  { return type; }
-    public void setType(String type)         { this.type = type; }
+    public void setType(String type)         { checkNotFrozen(); this.type = type; }
 
     public Gender getGender()                { return gender; }
-    public void setGender(Gender gender)     { this.gender = gender; }
+    public void setGender(Gender gender)     { checkNotFrozen(); this.gender = gender; }
 
     public String getOriginName()            { return originName; }
-    public void setOriginName(String o)      { this.originName = o; }
+    public void setOriginName(String o)      { checkNotFrozen(); this.originName = o; }
 
     public String getLocationName()          { return locationName; }
-    public void setLocationName(String l)    { this.locationName = l; }
+    public void setLocationName(String l)    { checkNotFrozen(); this.locationName = l; }
 
     public String getCreated()               { return created; }
-    public void setCreated(String created)   { this.created = created; }
+    public void setCreated(String created)   { checkNotFrozen(); this.created = created; }
 }
@@ -0,0 +1,402 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Character;
+import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.util.CsvParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Массовый импорт персонажей.
+ *
+ * <p>В отличие от {@link CharacterCrudService#create}, который перечитывает
+ * и переписывает весь набор на каждую строку, импорт работает конвейером:
+ * <ol>
+ *   <li><b>чтение</b> — один поток нарезает источник на порции;</li>
+ *   <li><b>разбор и проверка</b> — несколько потоков превращают порции
+ *       в {@link Character} и отбрасывают некорректные строки;</li>
+ *   <li><b>фиксация</b> — вызывающий поток в исходном порядке отсеивает дубликаты,
+ *       резервирует ID на каждый пакет ({@link CharacterCrudService#allocateIds})
+ *       и сохраняет крупные пакеты через {@link CharacterCrudService#createAll} —
+ *       один проход записи на пакет.</li>
+ * </ol>
+ * Между стадиями — ограниченные очереди, а общее число порций «в полёте»
+ * (от чтения до фиксации, включая буфер восстановления порядка) ограничено
+ * семафором. Если фиксация не успевает или один поток разбора «застрял»,
+ * чтение приостанавливается (backpressure), и память не растёт
+ * с размером источника.
+ *
+ * <p>Импорт не транзакционен: пакеты, сохранённые до ошибки, остаются
+ * в хранилище. При ошибке бросается {@link ImportFailedException}
+ * с итогом по уже сохранённым пакетам.
+ *
+ * <p>ID из входных данных игнорируются — новые персонажи всегда получают
+ * свободные ID хранилища. ID резервируются ровно под готовый пакет перед
+ * его сохранением, поэтому после импорта нумерация продолжается без пропусков.
+ */
+public class BulkImportService {
+
+    /**
+     * Параметры импорта.
+     *
+     * @param batchSize     число персонажей в одном сохраняемом пакете
+     * @param chunkSize     число строк в порции между стадиями конвейера
+     * @param parserThreads число потоков разбора
+     * @param queueCapacity ёмкость каждой очереди (в порциях)
+     * @param dedupeKey     ключ дедупликации (или null — без дедупликации)
+     */
+    public record Options(int batchSize, int chunkSize,
+                          int parserThreads, int queueCapacity,
+                          Function<Character, ?> dedupeKey) {
+
+        public Options {
+            if (batchSize <= 0 || chunkSize <= 0 || parserThreads <= 0 || queueCapacity <= 0) {
+                throw new IllegalArgumentException("Все размеры импорта должны быть > 0");
+            }
+        }
+
+        public static Options defaults() {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            return new Options(10_000, 500, threads, 16, byNameAndOrigin());
+        }
+
+        /** Копия параметров с другим ключом дедупликации. */
+        public Options withDedupeKey(Function<Character, ?> key) {
+            return new Options(batchSize, chunkSize, parserThreads, queueCapacity, key);
+        }
+    }
+
+    /**
+     * Итог импорта.
+     *
+     * @param read       прочитано записей из источника
+     * @param imported   добавлено персонажей
+     * @param duplicates пропущено дубликатов
+     * @param rejected   отброшено некорректных записей
+     * @param batches    число сохранённых пакетов
+     */
+    public record ImportResult(long read, long imported, long duplicates, long rejected, int batches) {}
+
+    /**
+     * Ошибка импорта. Пакеты, сохранённые до ошибки, остаются в хранилище;
+     * их число и прочие счётчики доступны через {@link #partialResult()}.
+     */
+    public static class ImportFailedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ImportResult partialResult;
+
+        public ImportFailedException(String message, Throwable cause, ImportResult partialResult) {
+            super(message, cause);
+            this.partialResult = partialResult;
+        }
+
+        /** Итог по пакетам, успешно сохранённым до ошибки. */
+        public ImportResult partialResult() {
+            return partialResult;
+        }
+    }
+
+    /** Ключ дедупликации: имя без учёта регистра. */
+    public static Function<Character, ?> byName() {
+        return c -> c.getName().toLowerCase(Locale.ROOT);
+    }
+
+    /** Ключ дедупликации: имя и место происхождения без учёта регистра. */
+    public static Function<Character, ?> byNameAndOrigin() {
+        return c -> c.getName().toLowerCase(Locale.ROOT) + "\u0000" + c.getOriginName().toLowerCase(Locale.ROOT);
+    }
+
+    /** Порция данных между стадиями; {@code items == null} — конец потока. */
+    private record Chunk<T>(long seq, List<T> items) {
+        boolean isEnd() { return items == null; }
+    }
+
+    /** Счётчики стадии фиксации; нужны и для частичного итога при ошибке. */
+    private static final class CommitProgress {
+        long imported;
+        long duplicates;
+        int  batches;
+    }
+
+    private final CharacterCrudService crud;
+    private final Options options;
+
+    public BulkImportService(CharacterCrudService crud, Options options) {
+        this.crud    = crud;
+        this.options = options;
+    }
+
+    // ══════════════════════════════════════════════
+    //  ИСТОЧНИКИ
+    // ══════════════════════════════════════════════
+
+    /**
+     * Импортирует персонажей из CSV-файла того же формата, что и хранилище
+     * (первая строка — заголовок; столбец id может быть пустым).
+     */
+    public ImportResult importCsv(Path csv) throws IOException {
+        try (Stream<String> lines = Files.lines(csv, StandardCharsets.UTF_8)) {
+            Iterator<String> it = lines.skip(1).iterator();
+            return importLines(it);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Импортирует строки CSV без заголовка. Пустые строки пропускаются.
+     */
+    public ImportResult importLines(Iterator<String> lines) throws IOException {
+        return run(lines, line -> line.isBlank() ? null : validate(CsvParser.parseImportLine(line)));
+    }
+
+    /**
+     * Импортирует уже разобранных персонажей (их ID игнорируются).
+     */
+    public ImportResult importCharacters(Iterator<Character> rows) throws IOException {
+        return run(rows, c -> validate(new Character(c)));
+    }
+
+    public ImportResult importCharacters(Stream<Character> rows) throws IOException {
+        return importCharacters(rows.iterator());
+    }
+
+    /**
+     * Проверяет запись: имя обязательно, поля не должны ломать CSV.
+     * Отсутствующие значения заменяются значениями по умолчанию.
+     */
+    private static Character validate(Character c) {
+        if (c.getName() == null || c.getName().isBlank()) {
+            throw new IllegalArgumentException("пустое имя");
+        }
+        if (c.getGender() == null) c.setGender(Gender.UNKNOWN);
+        if (c.getStatus() == null || c.getStatus().isBlank()) c.setStatus("unknown");
+        if (c.getSpecies() == null) c.setSpecies("");
+        if (c.getType() == null) c.setType("");
+        if (c.getOriginName() == null || c.getOriginName().isBlank()) c.setOriginName("unknown");
+        if (c.getLocationName() == null || c.getLocationName().isBlank()) c.setLocationName("unknown");
+        if (c.getCreated() == null || c.getCreated().isBlank()) c.setCreated(Instant.now().toString());
+
+        for (String field : new String[] {c.getName(), c.getStatus(), c.getSpecies(), c.getType(),
+                c.getOriginName(), c.getLocationName(), c.getCreated()}) {
+            if (field.indexOf(',') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("поле содержит запятую или перевод строки: " + field);
+            }
+        }
+        return c;
+    }
+
+    // ══════════════════════════════════════════════
+    //  КОНВЕЙЕР
+    // ══════════════════════════════════════════════
+
+    /**
+     * @param parser разбор одной записи; null — запись пропускается,
+     *               исключение — запись отбрасывается как некорректная
+     */
+    private <T> ImportResult run(Iterator<T> source, Function<T, Character> parser) throws IOException {
+        BlockingQueue<Chunk<T>> rawQueue = new ArrayBlockingQueue<>(options.queueCapacity());
+        BlockingQueue<Chunk<Character>> parsedQueue = new ArrayBlockingQueue<>(options.queueCapacity());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong read = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        // Порции в полёте: очереди + потоки разбора + буфер восстановления порядка
+        Semaphore inFlight = new Semaphore(options.queueCapacity() * 2 + options.parserThreads());
+        CommitProgress progress = new CommitProgress();
+
+        List<Thread> workers = new ArrayList<>();
+        workers.add(Thread.ofPlatform().name("import-reader").daemon().start(() ->
+                readStage(source, rawQueue, inFlight, read, failure)));
+        for (int i = 0; i < options.parserThreads(); i++) {
+            workers.add(Thread.ofPlatform().name("import-parser-" + i).daemon().start(() ->
+                    parseStage(parser, rawQueue, parsedQueue, rejected, failure)));
+        }
+
+        try {
+            commitStage(parsedQueue, inFlight, failure, progress);
+            ImportResult result = new ImportResult(read.get(), progress.imported,
+                    progress.duplicates, rejected.get(), progress.batches);
+            System.out.printf("[IMPORT] Прочитано: %d, добавлено: %d, дубликатов: %d, отброшено: %d, пакетов: %d%n",
+                    result.read(), result.imported(), result.duplicates(), result.rejected(), result.batches());
+            return result;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            ImportResult partial = new ImportResult(read.get(), progress.imported,
+                    progress.duplicates, rejected.get(), progress.batches);
+            throw new ImportFailedException(String.format(
+                    "Импорт прерван: сохранено %d персонажей в %d пакетах (%s)",
+                    partial.imported(), partial.batches(), e.getMessage()), e, partial);
+        } finally {
+            // При ошибке фиксации будим стадии, заблокированные на полных очередях
+            for (Thread t : workers) {
+                t.interrupt();
+            }
+        }
+    }
+
+    private <T> void readStage(Iterator<T> source, BlockingQueue<Chunk<T>> out, Semaphore inFlight,
+                               AtomicLong read, AtomicReference<Throwable> failure) {
+        long seq = 0;
+        try {
+            List<T> chunk = new ArrayList<>(options.chunkSize());
+            while (source.hasNext()) {
+                chunk.add(source.next());
+                if (chunk.size() == options.chunkSize()) {
+                    inFlight.acquire();
+                    read.addAndGet(chunk.size());
+                    out.put(new Chunk<>(seq++, chunk));
+                    chunk = new ArrayList<>(options.chunkSize());
+                }
+            }
+            if (!chunk.isEmpty()) {
+                inFlight.acquire();
+                read.addAndGet(chunk.size());
+                out.put(new Chunk<>(seq++, chunk));
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+        // Каждому потоку разбора — свой маркер конца; seq маркера = общее число порций
+        try {
+            for (int i = 0; i < options.parserThreads(); i++) {
+                out.put(new Chunk<>(seq, null));
+            }
+        } catch (InterruptedException ignored) {
+            // фиксация уже завершилась с ошибкой
+        }
+    }
+
+    private <T> void parseStage(Function<T, Character> parser, BlockingQueue<Chunk<T>> in,
+                                BlockingQueue<Chunk<Character>> out,
+                                AtomicLong rejected, AtomicReference<Throwable> failure) {
+        try {
+            while (true) {
+                Chunk<T> chunk = in.take();
+                if (chunk.isEnd()) {
+                    out.put(new Chunk<>(chunk.seq(), null));
+                    return;
+                }
+                List<Character> parsed = new ArrayList<>(chunk.items().size());
+                for (T item : chunk.items()) {
+                    try {
+                        Character c = parser.apply(item);
+                        if (c != null) parsed.add(c);
+                    } catch (RuntimeException e) {
+                        rejected.incrementAndGet();
+                        System.err.println("[IMPORT] Пропускаем некорректную запись: " + item
+                                + " (" + e.getMessage() + ")");
+                    }
+                }
+                out.put(new Chunk<>(chunk.seq(), parsed));
+            }
+        } catch (InterruptedException e) {
+            // фиксация завершилась с ошибкой — просто выходим
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            try {
+                out.put(new Chunk<>(Long.MAX_VALUE, null));
+            } catch (InterruptedException ignored) {
+                // выходим
+            }
+        }
+    }
+
+    private void commitStage(BlockingQueue<Chunk<Character>> in, Semaphore inFlight,
+                             AtomicReference<Throwable> failure, CommitProgress progress)
+            throws IOException, InterruptedException {
+
+        Function<Character, ?> keyFn = options.dedupeKey();
+        Set<Object> seenKeys = new HashSet<>();
+        if (keyFn != null) {
+            for (Character c : crud.snapshot().characters()) {
+                seenKeys.add(keyFn.apply(c));
+            }
+        }
+
+        // Порции приходят от нескольких потоков вразнобой — восстанавливаем исходный порядок.
+        // Размер буфера ограничен семафором inFlight: разрешение возвращается, только когда
+        // порция обработана по порядку.
+        Map<Long, List<Character>> pending = new HashMap<>();
+        long nextSeq = 0;
+        long totalChunks = Long.MAX_VALUE;
+
+        List<Character> batch = new ArrayList<>(options.batchSize());
+
+        while (nextSeq < totalChunks) {
+            Chunk<Character> chunk = in.take();
+            if (failure.get() != null) {
+                break;
+            }
+            if (chunk.isEnd()) {
+                // seq маркера конца — общее число порций источника
+                totalChunks = Math.min(totalChunks, chunk.seq());
+                continue;
+            }
+            pending.put(chunk.seq(), chunk.items());
+
+            List<Character> ready;
+            while ((ready = pending.remove(nextSeq)) != null) {
+                nextSeq++;
+                inFlight.release();
+                for (Character c : ready) {
+                    if (keyFn != null && !seenKeys.add(keyFn.apply(c))) {
+                        progress.duplicates++;
+                        continue;
+                    }
+                    batch.add(c);
+
+                    if (batch.size() == options.batchSize()) {
+                        commitBatch(batch, progress);
+                        batch = new ArrayList<>(options.batchSize());
+                    }
+                }
+            }
+        }
+
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new IOException("Ошибка в конвейере импорта: " + error.getMessage(), error);
+        }
+        commitBatch(batch, progress);
+    }
+
+    private void commitBatch(List<Character> batch, CommitProgress progress) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // ID резервируются ровно под пакет: лишние не «сгорают» и не сдвигают
+        // нумерацию последующих create()
+        int nextId = crud.allocateIds(batch.size());
+        for (Character c : batch) {
+            c.setId(nextId++);
+        }
+        crud.createAll(batch);
+        progress.imported += batch.size();
+        progress.batches++;
+    }
+}
@@ -7,17 +7,30 @@ import com.khalchukov.labs.util.CsvParser;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * CRUD-сервис для управления персонажами в CSV-файле.
  *
- * <p>Все операции работают по схеме «загрузить → изменить → сохранить»,
- * что соответствует файловому хранилищу без БД.
+ * <p>Данные хранятся в памяти в виде неизменяемых версий ({@link CharacterSnapshot}),
+ * файл — долговременная копия последней версии. Схема MVCC:
+ * <ul>
+ *   <li>читатели берут текущий снимок без блокировок и работают с ним сколько угодно
+ *       долго — длинный просмотр или подсчёт статистики видит согласованное
+ *       состояние на один момент времени и не мешает писателям;</li>
+ *   <li>писатели сериализуются между собой, строят новую версию (copy-on-write),
+ *       атомарно сохраняют её в файл и только после этого публикуют.</li>
+ * </ul>
+ * Поэтому время записи не зависит от числа одновременно идущих чтений.
  *
  * <h2>Операции:</h2>
  * <ul>
+ *   <li>{@link #snapshot}  — согласованный снимок на текущий момент</li>
  *   <li>{@link #findAll}   — получить всех персонажей</li>
  *   <li>{@link #findById}  — найти по ID</li>
  *   <li>{@link #create}    — добавить нового</li>
@@ -29,19 +42,112 @@ public class CharacterCrudService {
 
     private final Path csvPath;
 
+    /** Сериализует писателей (и первичную загрузку); читатели его не берут. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** Текущая опубликованная версия; null — файл ещё не загружен. */
+    private volatile CharacterSnapshot current;
+
+    /** Верхняя граница выданных, но, возможно, ещё не записанных ID (под writeLock). */
+    private int reservedUpTo;
+
+    /** Слушатель смены текущей версии (загрузка, запись, выгрузка); см. {@link DatasetRegistry}. */
+    private volatile Runnable changeListener;
+
+    /** Версия сменилась, а слушатель ещё не уведомлён. */
+    private final AtomicBoolean changed = new AtomicBoolean();
+
     public CharacterCrudService(Path csvPath) {
         this.csvPath = csvPath;
     }
 
+    /**
+     * Возвращает текущий неизменяемый снимок данных.
+     * При первом обращении загружает файл.
+     *
+     * <p>Полученный снимок можно читать без ограничений по времени:
+     * параллельные изменения создают новые версии и на него не влияют.
+     *
+     * <p><b>Персонажи снимка общие для всех версий и заморожены</b>:
+     * любой сеттер бросает {@link UnsupportedOperationException}.
+     * Чтобы изменить персонажа, используйте {@link #update} или работайте
+     * с копиями из {@link #findAll()} / {@link #findById(int)}.
+     */
+    public CharacterSnapshot snapshot() throws IOException {
+        CharacterSnapshot snap = current;
+        if (snap != null) {
+            return snap;
+        }
+        writeLock.lock();
+        try {
+            if (current == null) {
+                current = load();
+                changed.set(true);
+            }
+            return current;
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
+    }
+
+    /**
+     * Выгружает данные из памяти. Файл уже содержит последнюю версию,
+     * поэтому следующее обращение просто перечитает его. Читатели,
+     * удерживающие ранее полученный снимок, продолжают работать с ним.
+     */
+    public void evict() {
+        writeLock.lock();
+        try {
+            if (current != null) {
+                current = null;
+                changed.set(true);
+            }
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
+    }
+
+    /** Загружены ли данные в память. */
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    /** Текущая версия без загрузки файла (null, если данные не загружены). */
+    CharacterSnapshot peek() {
+        return current;
+    }
+
+    /**
+     * Устанавливает слушателя, который вызывается после каждой смены
+     * текущей версии: загрузки файла, записи или выгрузки. Вызов происходит
+     * вне {@link #writeLock}, поэтому слушатель может обращаться к другим сервисам.
+     */
+    void setChangeListener(Runnable listener) {
+        this.changeListener = listener;
+    }
+
+    /** Путь к CSV-файлу набора данных. */
+    public Path getCsvPath() {
+        return csvPath;
+    }
+
     // ══════════════════════════════════════════════
     //  READ
     // ══════════════════════════════════════════════
 
     /**
-     * Возвращает всех персонажей из файла.
+     * Возвращает копии всех персонажей текущей версии.
+     * Для длинных просмотров без копирования используйте {@link #snapshot()}.
      */
     public List<Character> findAll() throws IOException {
-        return CsvParser.readAll(csvPath);
+        List<Character> characters = snapshot().characters();
+        List<Character> copies = new ArrayList<>(characters.size());
+        for (Character c : characters) {
+            copies.add(new Character(c));
+        }
+        return copies;
     }
 
     /**
@@ -51,9 +157,7 @@ public class CharacterCrudService {
      * @return Optional с персонажем или Optional.empty()
      */
     public Optional<Character> findById(int id) throws IOException {
-        return findAll().stream()
-                .filter(c -> c.getId() == id)
-                .findFirst();
+        return snapshot().findById(id).map(Character::new);
     }
 
     // ══════════════════════════════════════════════
@@ -62,7 +166,7 @@ public class CharacterCrudService {
 
     /**
      * Добавляет нового персонажа в CSV-файл.
-     * ID генерируется автоматически: max(существующих) + 1.
+     * ID генерируется автоматически: max(существующих и зарезервированных) + 1.
      *
      * @param name         имя персонажа
      * @param status       статус (Alive / Dead / unknown)
@@ -77,26 +181,80 @@ public class CharacterCrudService {
                             String type, Gender gender,
                             String originName, String locationName) throws IOException {
 
-        List<Character> all = findAll();
+        Character newChar;
+        writeLock.lock();
+        try {
+            CharacterSnapshot base = snapshot();
+            int newId = Math.max(base.maxId(), reservedUpTo) + 1;
+            reservedUpTo = newId;
+            newChar = new Character(
+                    newId, name, status, species, type, gender,
+                    originName, locationName, Instant.now().toString()
+            );
 
-        int newId = all.stream()
-                .mapToInt(Character::getId)
-                .max()
-                .orElse(0) + 1;
-
-        Character newChar = new Character(
-                newId, name, status, species, type, gender,
-                originName, locationName, Instant.now().toString()
-        );
-
-        all.add(newChar);
-        CsvParser.writeAll(csvPath, all);
+            NavigableMap<Integer, Character> next = base.copyForWrite();
+            next.put(newChar.getId(), newChar);
+            publish(base, next);
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
+        newChar = new Character(newChar);
 
         System.out.printf("[CREATE] Создан персонаж: id=%d, name='%s', gender=%s%n",
                 newChar.getId(), newChar.getName(), newChar.getGender());
         return newChar;
     }
 
+    /**
+     * Резервирует непрерывный диапазон из {@code count} новых ID.
+     * Используется массовым импортом, чтобы не вычислять ID построчно.
+     *
+     * @param count размер диапазона
+     * @return первый ID диапазона
+     */
+    public int allocateIds(int count) throws IOException {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Размер диапазона ID должен быть > 0: " + count);
+        }
+        writeLock.lock();
+        try {
+            int first = Math.max(snapshot().maxId(), reservedUpTo) + 1;
+            reservedUpTo = first + count - 1;
+            return first;
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
+    }
+
+    /**
+     * Добавляет пакет персонажей с уже назначенными ID
+     * (см. {@link #allocateIds}) за один проход сохранения.
+     *
+     * @param batch персонажи для добавления
+     * @throws IllegalArgumentException если какой-то ID уже занят
+     */
+    public void createAll(List<Character> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            CharacterSnapshot base = snapshot();
+            NavigableMap<Integer, Character> next = base.copyForWrite();
+            for (Character c : batch) {
+                if (next.putIfAbsent(c.getId(), new Character(c)) != null) {
+                    throw new IllegalArgumentException("ID уже занят: " + c.getId());
+                }
+            }
+            publish(base, next);
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
+    }
+
     // ══════════════════════════════════════════════
     //  UPDATE
     // ══════════════════════════════════════════════
@@ -121,26 +279,35 @@ public class CharacterCrudService {
                                       String originName, String locationName)
             throws IOException {
 
-        List<Character> all = findAll();
-        Optional<Character> found = all.stream()
-                .filter(c -> c.getId() == id)
-                .findFirst();
+        Character c;
+        writeLock.lock();
+        try {
+            CharacterSnapshot base = snapshot();
+            Optional<Character> found = base.findById(id);
 
-        if (found.isEmpty()) {
-            System.out.printf("[UPDATE] Персонаж с id=%d не найден.%n", id);
-            return Optional.empty();
-        }
+            if (found.isEmpty()) {
+                System.out.printf("[UPDATE] Персонаж с id=%d не найден.%n", id);
+                return Optional.empty();
+            }
 
-        Character c = found.get();
-        if (name         != null) c.setName(name);
-        if (status       != null) c.setStatus(status);
-        if (species      != null) c.setSpecies(species);
-        if (type         != null) c.setType(type);
-        if (gender       != null) c.setGender(gender);
-        if (originName   != null) c.setOriginName(originName);
-        if (locationName != null) c.setLocationName(locationName);
+            // Опубликованные версии неизменяемы — правим копию
+            c = new Character(found.get());
+            if (name         != null) c.setName(name);
+            if (status       != null) c.setStatus(status);
+            if (species      != null) c.setSpecies(species);
+            if (type         != null) c.setType(type);
+            if (gender       != null) c.setGender(gender);
+            if (originName   != null) c.setOriginName(originName);
+            if (locationName != null) c.setLocationName(locationName);
 
-        CsvParser.writeAll(csvPath, all);
+            NavigableMap<Integer, Character> next = base.copyForWrite();
+            next.put(id, c);
+            publish(base, next);
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
+        c = new Character(c);
 
         System.out.printf("[UPDATE] Обновлён персонаж: id=%d, name='%s', gender=%s%n",
                 c.getId(), c.getName(), c.getGender());
@@ -158,11 +325,22 @@ public class CharacterCrudService {
      * @return true если удалён, false если не найден
      */
     public boolean delete(int id) throws IOException {
-        List<Character> all = findAll();
-        boolean removed = all.removeIf(c -> c.getId() == id);
+        boolean removed;
+        writeLock.lock();
+        try {
+            CharacterSnapshot base = snapshot();
+            removed = base.findById(id).isPresent();
+            if (removed) {
+                NavigableMap<Integer, Character> next = base.copyForWrite();
+                next.remove(id);
+                publish(base, next);
+            }
+        } finally {
+            writeLock.unlock();
+            notifyIfChanged();
+        }
 
         if (removed) {
-            CsvParser.writeAll(csvPath, all);
             System.out.printf("[DELETE] Удалён персонаж с id=%d%n", id);
         } else {
             System.out.printf("[DELETE] Персонаж с id=%d не найден.%n", id);
@@ -170,4 +348,51 @@ public class CharacterCrudService {
         return removed;
     }
 
+    // ══════════════════════════════════════════════
+    //  ПУБЛИКАЦИЯ ВЕРСИЙ
+    // ══════════════════════════════════════════════
+
+    /**
+     * Сохраняет новую версию в файл и публикует её для читателей.
+     * Вызывается только под {@link #writeLock}. Если запись в файл
+     * не удалась, версия не публикуется.
+     */
+    private void publish(CharacterSnapshot base, NavigableMap<Integer, Character> next)
+            throws IOException {
+        CharacterSnapshot snap = new CharacterSnapshot(base.version() + 1, next);
+        CsvParser.writeAllAtomically(csvPath, snap.characters());
+        current = snap;
+        changed.set(true);
+    }
+
+    /**
+     * Читает файл в первую версию. Файл с повторяющимися ID не загружается:
+     * снимок хранит одного персонажа на ID, и первая же запись переписала бы
+     * файл без остальных строк.
+     */
+    private CharacterSnapshot load() throws IOException {
+        List<Character> characters = CsvParser.readAll(csvPath);
+        try {
+            return CharacterSnapshot.of(1, characters);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Файл " + csvPath + " не загружен: " + e.getMessage()
+                    + ". Исправьте ID вручную, чтобы не потерять строки.", e);
+        }
+    }
+
+    /**
+     * Уведомляет слушателя о смене версии. Вызывается после {@code unlock()};
+     * если блокировка ещё удерживается (вложенный вызов {@link #snapshot()}),
+     * уведомление откладывается до выхода из внешнего метода.
+     */
+    private void notifyIfChanged() {
+        if (writeLock.isHeldByCurrentThread()) {
+            return;
+        }
+        Runnable listener = changeListener;
+        if (listener != null && changed.getAndSet(false)) {
+            listener.run();
+        }
+    }
+
 }
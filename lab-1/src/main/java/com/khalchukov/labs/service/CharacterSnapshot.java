@@ -0,0 +1,125 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Character;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Неизменяемая версия набора персонажей (снимок MVCC).
+ *
+ * <p>Снимок создаётся писателем целиком и публикуется атомарно, поэтому
+ * читатель, получивший снимок, всегда видит согласованное состояние на
+ * момент публикации — без блокировок и без «половинчатых» записей.
+ *
+ * <p>Объекты {@link Character} внутри снимка разделяются между версиями,
+ * поэтому при создании снимка они замораживаются ({@link Character#freeze()}):
+ * попытка вызвать сеттер бросает {@link UnsupportedOperationException}.
+ * Для изменения нужно сделать копию персонажа.
+ */
+public final class CharacterSnapshot {
+
+    // Грубые оценки размеров объектов в куче (64-bit JVM, compressed oops)
+    private static final int CHARACTER_OVERHEAD = 48;  // заголовок + 9 полей
+    private static final int ENTRY_OVERHEAD     = 72;  // TreeMap.Entry + Integer + слот списка
+    private static final int STRING_OVERHEAD    = 40;  // String + заголовок byte[]
+
+    private final long version;
+    private final NavigableMap<Integer, Character> byId;
+    private final List<Character> characters;
+    private final long estimatedBytes;
+
+    /**
+     * @param version номер версии (монотонно растёт с каждой записью)
+     * @param byId    персонажи по ID; карта передаётся во владение снимку
+     */
+    CharacterSnapshot(long version, NavigableMap<Integer, Character> byId) {
+        for (Character c : byId.values()) {
+            c.freeze();
+        }
+        this.version    = version;
+        this.byId       = Collections.unmodifiableNavigableMap(byId);
+        this.characters = List.copyOf(byId.values());
+        this.estimatedBytes = estimateBytes(this.characters);
+    }
+
+    /**
+     * Создаёт снимок из списка персонажей (при загрузке файла).
+     *
+     * @throws IllegalArgumentException если ID повторяются: снимок хранит одного
+     *         персонажа на ID, и следующая запись молча потеряла бы остальные строки
+     */
+    static CharacterSnapshot of(long version, List<Character> characters) {
+        NavigableMap<Integer, Character> map = new TreeMap<>();
+        Set<Integer> duplicates = new TreeSet<>();
+        for (Character c : characters) {
+            if (map.putIfAbsent(c.getId(), c) != null) {
+                duplicates.add(c.getId());
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            throw new IllegalArgumentException("повторяющиеся ID: " + duplicates);
+        }
+        return new CharacterSnapshot(version, map);
+    }
+
+    /**
+     * Возвращает изменяемую копию карты для построения следующей версии.
+     */
+    NavigableMap<Integer, Character> copyForWrite() {
+        return new TreeMap<>(byId);
+    }
+
+    /** Номер версии снимка. */
+    public long version() {
+        return version;
+    }
+
+    /** Все персонажи, упорядоченные по ID (неизменяемый список замороженных объектов). */
+    public List<Character> characters() {
+        return characters;
+    }
+
+    /** Поиск по ID за O(log n). */
+    public Optional<Character> findById(int id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /** Максимальный ID или 0, если снимок пуст. */
+    public int maxId() {
+        return byId.isEmpty() ? 0 : byId.lastKey();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Приблизительный объём памяти, занимаемый снимком (в байтах).
+     * Используется для учёта бюджета памяти в {@link DatasetRegistry}.
+     */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private static long estimateBytes(List<Character> characters) {
+        long bytes = 0;
+        for (Character c : characters) {
+            bytes += CHARACTER_OVERHEAD + ENTRY_OVERHEAD
+                    + stringBytes(c.getName()) + stringBytes(c.getStatus())
+                    + stringBytes(c.getSpecies()) + stringBytes(c.getType())
+                    + stringBytes(c.getOriginName()) + stringBytes(c.getLocationName())
+                    + stringBytes(c.getCreated());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String s) {
+        return s == null ? 0 : STRING_OVERHEAD + s.length();
+    }
+}
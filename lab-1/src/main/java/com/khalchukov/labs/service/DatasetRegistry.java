@@ -0,0 +1,212 @@
+package com.khalchukov.labs.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реестр наборов данных: по одному {@link CharacterCrudService} на CSV-файл.
+ *
+ * <p>Загруженные в память наборы учитываются в общем бюджете памяти
+ * ({@code maxBytes}). Когда бюджет превышен, реестр выгружает наборы
+ * с наименьшим приоритетом по схеме GDSF (Greedy-Dual-Size-Frequency):
+ * <pre>
+ *   приоритет = L + частота_обращений × 1 МБ / размер
+ * </pre>
+ * где {@code L} — «инфляция», равная приоритету последнего выгруженного набора.
+ * Мелкие и часто используемые наборы остаются в памяти, крупные и давно
+ * не используемые — выгружаются первыми; за счёт роста {@code L} некогда
+ * популярный, но «остывший» набор со временем тоже уходит (старение как в LRU).
+ *
+ * <p>Выгрузка дешёвая: файл всегда содержит последнюю версию, поэтому
+ * сервис просто отбрасывает снимок и перечитывает файл при следующем обращении.
+ *
+ * <p>Сервисы сообщают реестру о каждой смене версии (загрузка, запись,
+ * выгрузка), поэтому бюджет соблюдается, даже если вызывающий код держит
+ * ссылку на сервис и обращается к нему напрямую: повторная загрузка
+ * выгруженного набора или рост набора после записи сразу учитываются
+ * и при необходимости вытесняют другие наборы. Частота обращений для
+ * приоритета считается только в {@link #get(Path)}.
+ */
+public class DatasetRegistry {
+
+    private static final double SIZE_UNIT = 1024.0 * 1024.0;
+
+    private final long maxBytes;
+    private final Map<Path, Entry> entries = new HashMap<>();
+
+    private double inflation;
+    private long   residentBytes;
+    private long   hits;
+    private long   misses;
+    private long   evictions;
+
+    /** Учётная запись о наборе данных. */
+    private static final class Entry {
+        final CharacterCrudService service;
+        long    frequency;
+        long    bytes;
+        double  priority;
+        boolean resident;
+
+        Entry(CharacterCrudService service) {
+            this.service = service;
+        }
+    }
+
+    /**
+     * @param maxBytes бюджет памяти на все загруженные наборы (в байтах)
+     */
+    public DatasetRegistry(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Бюджет памяти должен быть > 0: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Возвращает сервис для набора данных, при необходимости загружая его
+     * в память и выгружая другие наборы, чтобы уложиться в бюджет.
+     *
+     * <p>Если один набор сам по себе больше бюджета, он всё равно
+     * загружается, но остаётся единственным резидентным.
+     *
+     * @param csvPath путь к CSV-файлу набора
+     * @return сервис с загруженными данными
+     */
+    public CharacterCrudService get(Path csvPath) throws IOException {
+        Path key = csvPath.toAbsolutePath().normalize();
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                Entry created = new Entry(new CharacterCrudService(key));
+                created.service.setChangeListener(() -> account(created));
+                entries.put(key, created);
+                entry = created;
+            }
+            if (entry.service.isLoaded()) {
+                hits++;
+            } else {
+                misses++;
+            }
+            // Обращение учитывается до загрузки: загрузка сразу сообщит о себе
+            // через account(), и приоритет должен уже включать это обращение
+            entry.frequency++;
+        }
+
+        // Файл читается вне монитора, чтобы не задерживать обращения к другим наборам;
+        // загрузка сама сообщит реестру о новом размере через account()
+        entry.service.snapshot();
+
+        account(entry);
+        return entry.service;
+    }
+
+    /**
+     * Выгружает набор из памяти (если он был загружен).
+     */
+    public void evict(Path csvPath) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(csvPath.toAbsolutePath().normalize());
+        }
+        if (entry != null) {
+            // Сервис сообщит о выгрузке слушателю; account() — на случай,
+            // если набор уже был выгружен в обход реестра
+            entry.service.evict();
+            account(entry);
+        }
+    }
+
+    /** Суммарный оценочный объём загруженных наборов (в байтах). */
+    public synchronized long residentBytes() {
+        return residentBytes;
+    }
+
+    /** Пути наборов, находящихся сейчас в памяти. */
+    public synchronized List<Path> residentDatasets() {
+        List<Path> result = new ArrayList<>();
+        for (Map.Entry<Path, Entry> e : entries.entrySet()) {
+            if (e.getValue().resident) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Краткая статистика для вывода в консоль. */
+    public synchronized String stats() {
+        return String.format("наборов: %d, в памяти: %d (%.1f / %.1f МБ), попаданий: %d, промахов: %d, выгрузок: %d",
+                entries.size(), residentDatasets().size(),
+                residentBytes / SIZE_UNIT, maxBytes / SIZE_UNIT, hits, misses, evictions);
+    }
+
+    // ──────────────────── Учёт и вытеснение ────────────────────
+
+    /**
+     * Приводит учёт набора в соответствие с текущей версией его сервиса
+     * и при превышении бюджета вытесняет другие наборы. Вызывается из
+     * {@link #get(Path)} и слушателем смены версии сервиса.
+     *
+     * <p>Жертвы выбираются под монитором реестра, а выгружаются уже после
+     * выхода из него: {@link CharacterCrudService#evict()} ждёт блокировку
+     * записи сервиса, и если набор в этот момент читает или пишет файл,
+     * ожидание под монитором задержало бы {@code get()} всех наборов.
+     */
+    private void account(Entry entry) {
+        List<Entry> victims;
+        synchronized (this) {
+            victims = recount(entry);
+        }
+        for (Entry victim : victims) {
+            // Слушатель выгруженного сервиса ещё раз вызовет account() — учёт
+            // сверится с фактическим состоянием, даже если набор успели перечитать
+            victim.service.evict();
+        }
+    }
+
+    /**
+     * Пересчитывает учёт набора и выбирает наборы для вытеснения.
+     * Выбранные сразу снимаются с учёта, сама выгрузка — за вызывающим.
+     */
+    private List<Entry> recount(Entry entry) {
+        CharacterSnapshot snap = entry.service.peek();
+        if (entry.resident) {
+            residentBytes -= entry.bytes;
+        }
+        entry.resident = snap != null;
+        entry.bytes    = snap == null ? 0 : snap.estimatedBytes();
+        residentBytes += entry.bytes;
+
+        List<Entry> victims = new ArrayList<>();
+        if (!entry.resident) {
+            return victims;
+        }
+        entry.priority = inflation + entry.frequency * SIZE_UNIT / Math.max(1, entry.bytes);
+
+        while (residentBytes > maxBytes) {
+            Entry victim = null;
+            for (Entry e : entries.values()) {
+                if (e.resident && e != entry
+                        && (victim == null || e.priority < victim.priority)) {
+                    victim = e;
+                }
+            }
+            if (victim == null) {
+                break; // в памяти остался только текущий набор
+            }
+            inflation = victim.priority;
+            victim.resident = false;
+            residentBytes  -= victim.bytes;
+            victim.bytes    = 0;
+            victims.add(victim);
+            evictions++;
+        }
+        return victims;
+    }
+}
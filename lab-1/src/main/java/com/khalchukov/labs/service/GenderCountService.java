@@ -7,7 +7,9 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.EnumMap;
 import java.util.List;
@@ -36,51 +38,90 @@ public class GenderCountService {
     }
 
     /**
-     * Сохраняет статистику в файл с красивым форматированием.
-     * Теперь это один метод, который и показывает, и сохраняет.
+     * Сохраняет текстовый отчёт по текущей статистике (на текущий момент).
+     * Для снимков из истории используйте {@link #saveReportToFile}.
      */
     public void saveStatsToFile(Path path, EnumMap<Gender, Integer> counts) throws IOException {
+        saveReportToFile(path, new GenderStatsHistory.StatsPoint(Instant.now(), counts));
+    }
+
+    /**
+     * Сохраняет текстовый отчёт для снимка из истории статистики
+     * (отчёт строится по требованию, в историю пишутся только числа).
+     */
+    public void saveReportToFile(Path path, GenderStatsHistory.StatsPoint point) throws IOException {
+        LocalDateTime time = LocalDateTime.ofInstant(point.time(), ZoneId.systemDefault());
+        writeReport(path, formatReport(point.counts(), time));
+    }
+
+    private void writeReport(Path path, String report) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(report);
+        }
+    }
+
+    /**
+     * Формирует текстовый отчёт со статистикой на момент {@code time}.
+     */
+    public String formatReport(EnumMap<Gender, Integer> counts, LocalDateTime time) {
         int total = counts.values().stream().mapToInt(Integer::intValue).sum();
+        String nl = System.lineSeparator();
 
         // Добавляем временную метку
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        String timestamp = time.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
 
-        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-            writer.write("╔════════════════════════════════════════════════╗");
-            writer.newLine();
-            writer.write("║     СТАТИСТИКА ПЕРСОНАЖЕЙ RICK AND MORTY      ║");
-            writer.newLine();
-            writer.write("╚════════════════════════════════════════════════╝");
-            writer.newLine();
-            writer.write("Дата и время: " + timestamp);
-            writer.newLine();
-            writer.newLine();
-
-            writer.write("┌────────────┬───────┐");
-            writer.newLine();
-            writer.write("│    ПОЛ     │ КОЛ-ВО │");
-            writer.newLine();
-            writer.write("├────────────┼───────┤");
-            writer.newLine();
-
-            for (Map.Entry<Gender, Integer> entry : counts.entrySet()) {
-                writer.write(String.format("│ %-10s │ %5d │",
-                        entry.getKey().name(), entry.getValue()));
-                writer.newLine();
-            }
-
-            writer.write("├────────────┼───────┤");
-            writer.newLine();
-            writer.write(String.format("│ %-10s │ %5d │", "ИТОГО", total));
-            writer.newLine();
-            writer.write("└────────────┴───────┘");
-            writer.newLine();
-
-            // Добавляем дополнительную информацию
-            writer.newLine();
-            writer.write("Всего персонажей в базе: " + total);
+        StringBuilder sb = new StringBuilder();
+        sb.append("╔════════════════════════════════════════════════╗").append(nl);
+        sb.append("║     СТАТИСТИКА ПЕРСОНАЖЕЙ RICK AND MORTY      ║").append(nl);
+        sb.append("╚════════════════════════════════════════════════╝").append(nl);
+        sb.append("Дата и время: ").append(timestamp).append(nl);
+        sb.append(nl);
+
+        sb.append("┌────────────┬───────┐").append(nl);
+        sb.append("│    ПОЛ     │ КОЛ-ВО │").append(nl);
+        sb.append("├────────────┼───────┤").append(nl);
+
+        for (Map.Entry<Gender, Integer> entry : counts.entrySet()) {
+            sb.append(String.format("│ %-10s │ %5d │",
+                    entry.getKey().name(), entry.getValue())).append(nl);
+        }
+
+        sb.append("├────────────┼───────┤").append(nl);
+        sb.append(String.format("│ %-10s │ %5d │", "ИТОГО", total)).append(nl);
+        sb.append("└────────────┴───────┘").append(nl);
+
+        // Добавляем дополнительную информацию
+        sb.append(nl);
+        sb.append("Всего персонажей в базе: ").append(total);
+        return sb.toString();
+    }
+
+    /**
+     * Печатает в консоль изменение статистики между двумя снимками истории.
+     */
+    public void printTrend(GenderStatsHistory.StatsDelta delta) {
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+                .withZone(ZoneId.systemDefault());
+
+        System.out.println("\nИзменения с " + fmt.format(delta.from().time())
+                + " по " + fmt.format(delta.to().time()) + ":");
+        System.out.println("┌────────────┬───────┬───────┬────────────┐");
+        System.out.println("│    ПОЛ     │ БЫЛО  │ СТАЛО │  В СУТКИ   │");
+        System.out.println("├────────────┼───────┼───────┼────────────┤");
+
+        for (Gender g : Gender.values()) {
+            System.out.printf("│ %-10s │ %5d │ %5d │ %+10.2f │%n", g.name(),
+                    delta.from().counts().get(g), delta.to().counts().get(g), delta.perDay(g));
         }
 
+        System.out.println("├────────────┼───────┼───────┼────────────┤");
+        double totalPerDay = 0;
+        for (Gender g : Gender.values()) {
+            totalPerDay += delta.perDay(g);
+        }
+        System.out.printf("│ %-10s │ %5d │ %5d │ %+10.2f │%n", "ИТОГО",
+                delta.from().total(), delta.to().total(), totalPerDay);
+        System.out.println("└────────────┴───────┴───────┴────────────┘");
     }
 
     /**
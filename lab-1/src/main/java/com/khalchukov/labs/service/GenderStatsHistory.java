@@ -0,0 +1,416 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.util.AtomicFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * История статистики по полу в одном компактном бинарном файле.
+ *
+ * <p>Вместо отдельного текстового отчёта на каждый подсчёт каждый снимок
+ * дописывается в конец файла записью фиксированной длины:
+ * <pre>
+ *   заголовок : magic "GSH1" (4) | версия (2) | число полов (2)
+ *   запись    : время, epoch ms (8) | количество на каждый Gender (4 × N)
+ * </pre>
+ * Записи упорядочены по времени, поэтому поиск по моменту времени —
+ * двоичный поиск по смещениям, без чтения всей истории.
+ *
+ * <p>Когда файл превышает {@code maxBytes} или самая старая запись выходит
+ * за срок хранения {@code retention}, история уплотняется:
+ * записи старше {@code retention} удаляются, записи старше
+ * {@code fullResolution} прореживаются до одной (последней) на интервал
+ * {@code downsampleBucket}. Если и этого мало — отбрасываются самые старые
+ * записи, пока файл не займёт половину лимита. Между уплотнениями старые
+ * записи хранятся с полной детализацией.
+ */
+public class GenderStatsHistory {
+
+    private static final int   MAGIC       = 0x47534831; // "GSH1"
+    private static final short VERSION     = 1;
+    private static final int   HEADER_SIZE = 8;
+    private static final Gender[] GENDERS  = Gender.values();
+    private static final int   RECORD_SIZE = Long.BYTES + Integer.BYTES * GENDERS.length;
+
+    /**
+     * Один снимок статистики.
+     */
+    public record StatsPoint(Instant time, EnumMap<Gender, Integer> counts) {
+        public int total() {
+            return counts.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    /**
+     * Изменение статистики между двумя снимками.
+     */
+    public record StatsDelta(StatsPoint from, StatsPoint to) {
+
+        /** Изменение количества для пола. */
+        public int change(Gender gender) {
+            return to.counts().get(gender) - from.counts().get(gender);
+        }
+
+        /** Изменение общего количества. */
+        public int totalChange() {
+            return to.total() - from.total();
+        }
+
+        /** Средняя скорость изменения для пола, персонажей в сутки. */
+        public double perDay(Gender gender) {
+            double days = Duration.between(from.time(), to.time()).toMillis() / 86_400_000.0;
+            return days <= 0 ? 0.0 : change(gender) / days;
+        }
+    }
+
+    private final Path file;
+    private final long maxBytes;
+    private final Duration retention;
+    private final Duration fullResolution;
+    private final Duration downsampleBucket;
+
+    /**
+     * @param file             файл истории (создаётся при первой записи)
+     * @param maxBytes         предельный размер файла; половина лимита должна
+     *                         вмещать заголовок и хотя бы одну запись
+     * @param retention        сколько хранить записи
+     * @param fullResolution   сколько хранить записи без прореживания
+     * @param downsampleBucket интервал прореживания старых записей
+     */
+    public GenderStatsHistory(Path file, long maxBytes, Duration retention,
+                              Duration fullResolution, Duration downsampleBucket) {
+        // Уплотнение обрезает файл до половины лимита — там должна остаться хотя бы одна запись
+        if (maxBytes < 2L * (HEADER_SIZE + RECORD_SIZE)) {
+            throw new IllegalArgumentException("Слишком маленький лимит файла истории: " + maxBytes);
+        }
+        this.file             = file;
+        this.maxBytes         = maxBytes;
+        this.retention        = retention;
+        this.fullResolution   = fullResolution;
+        this.downsampleBucket = downsampleBucket;
+    }
+
+    /**
+     * История с параметрами по умолчанию: 1 МБ, хранение год,
+     * полная детализация за неделю, далее — по одной записи в час.
+     */
+    public static GenderStatsHistory withDefaults(Path file) {
+        return new GenderStatsHistory(file, 1024 * 1024, Duration.ofDays(365),
+                Duration.ofDays(7), Duration.ofHours(1));
+    }
+
+    /**
+     * История с параметрами по умолчанию для конкретного набора данных.
+     * Имя файла строится из имени CSV и хеша его абсолютного пути, чтобы
+     * снимки разных наборов не попадали в один временной ряд.
+     *
+     * @param dir     каталог для файлов истории
+     * @param csvPath CSV-файл набора данных
+     */
+    public static GenderStatsHistory forDataset(Path dir, Path csvPath) {
+        Path normalized = csvPath.toAbsolutePath().normalize();
+        String name = normalized.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String hash = String.format("%08x", normalized.toString().hashCode());
+        return withDefaults(dir.resolve("gender_stats_" + stem + "_" + hash + ".bin"));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // ══════════════════════════════════════════════
+    //  ЗАПИСЬ
+    // ══════════════════════════════════════════════
+
+    /**
+     * Дописывает снимок с текущим временем.
+     */
+    public StatsPoint append(EnumMap<Gender, Integer> counts) throws IOException {
+        return append(Instant.now(), counts);
+    }
+
+    /**
+     * Дописывает снимок. Если время меньше времени последней записи,
+     * оно подтягивается к нему, чтобы сохранить упорядоченность файла.
+     * Если файл превысил лимит или самая старая запись вышла за срок
+     * хранения, история уплотняется ({@link #compact}).
+     */
+    public synchronized StatsPoint append(Instant time, EnumMap<Gender, Integer> counts) throws IOException {
+        StatsPoint point;
+        boolean needsCompaction;
+        try (FileChannel ch = openForWrite()) {
+            long records = recordCount(ch);
+            long millis = time.toEpochMilli();
+            if (records > 0) {
+                millis = Math.max(millis, readTime(ch, records - 1));
+            }
+
+            point = new StatsPoint(Instant.ofEpochMilli(millis), new EnumMap<>(counts));
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+            encode(point, buf);
+            buf.flip();
+            writeFully(ch, buf, HEADER_SIZE + records * RECORD_SIZE);
+            // Первая запись — самая старая: проверка срока хранения стоит одного чтения
+            needsCompaction = ch.size() > maxBytes
+                    || readTime(ch, 0) < Instant.now().minus(retention).toEpochMilli();
+        }
+
+        if (needsCompaction) {
+            compact(Instant.now());
+        }
+        return point;
+    }
+
+    /**
+     * Применяет хранение и прореживание и при необходимости
+     * обрезает самые старые записи до половины лимита.
+     */
+    public synchronized void compact(Instant now) throws IOException {
+        List<StatsPoint> all = readAll();
+
+        long retentionCutoff = now.minus(retention).toEpochMilli();
+        long fullCutoff      = now.minus(fullResolution).toEpochMilli();
+        long bucketMillis    = Math.max(1, downsampleBucket.toMillis());
+
+        List<StatsPoint> kept = new ArrayList<>();
+        for (int i = 0; i < all.size(); i++) {
+            long t = all.get(i).time().toEpochMilli();
+            if (t < retentionCutoff) continue;
+            if (t < fullCutoff && i + 1 < all.size()) {
+                long next = all.get(i + 1).time().toEpochMilli();
+                // Старые записи: оставляем только последнюю в своём интервале
+                if (next < fullCutoff && next / bucketMillis == t / bucketMillis) continue;
+            }
+            kept.add(all.get(i));
+        }
+
+        long maxRecords = (maxBytes / 2 - HEADER_SIZE) / RECORD_SIZE;
+        if (kept.size() > maxRecords) {
+            kept = kept.subList(kept.size() - (int) maxRecords, kept.size());
+        }
+        rewrite(kept);
+    }
+
+    // ══════════════════════════════════════════════
+    //  ЗАПРОСЫ
+    // ══════════════════════════════════════════════
+
+    /** Число записей в истории. */
+    public synchronized long size() throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkHeader(ch);
+            return recordCount(ch);
+        }
+    }
+
+    /** Последний снимок. */
+    public Optional<StatsPoint> latest() throws IOException {
+        return at(Instant.ofEpochMilli(Long.MAX_VALUE));
+    }
+
+    /** Последний снимок, сделанный не позже момента {@code time}. */
+    public synchronized Optional<StatsPoint> at(Instant time) throws IOException {
+        if (!Files.exists(file)) return Optional.empty();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkHeader(ch);
+            long idx = upperBound(ch, time.toEpochMilli()) - 1;
+            return idx < 0 ? Optional.empty() : Optional.of(readRecord(ch, idx));
+        }
+    }
+
+    /** Первый снимок, сделанный не раньше момента {@code time}. */
+    public synchronized Optional<StatsPoint> firstAfter(Instant time) throws IOException {
+        if (!Files.exists(file)) return Optional.empty();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkHeader(ch);
+            long idx = lowerBound(ch, time.toEpochMilli());
+            return idx >= recordCount(ch) ? Optional.empty() : Optional.of(readRecord(ch, idx));
+        }
+    }
+
+    /**
+     * Снимки в интервале [from, to]. Читаются только записи интервала.
+     */
+    public synchronized List<StatsPoint> range(Instant from, Instant to) throws IOException {
+        List<StatsPoint> result = new ArrayList<>();
+        if (!Files.exists(file)) return result;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkHeader(ch);
+            long start = lowerBound(ch, from.toEpochMilli());
+            long end   = upperBound(ch, to.toEpochMilli());
+            for (long i = start; i < end; i++) {
+                result.add(readRecord(ch, i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Изменение статистики за интервал [from, to]: между первым и последним
+     * снимком интервала. Читает только две записи.
+     *
+     * @return пусто, если в интервале нет снимков
+     */
+    public Optional<StatsDelta> delta(Instant from, Instant to) throws IOException {
+        Optional<StatsPoint> first = firstAfter(from);
+        Optional<StatsPoint> last  = at(to);
+        if (first.isEmpty() || last.isEmpty() || last.get().time().isBefore(first.get().time())) {
+            return Optional.empty();
+        }
+        return Optional.of(new StatsDelta(first.get(), last.get()));
+    }
+
+    // ──────────────────── Файл ────────────────────
+
+    private FileChannel openForWrite() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() == 0) {
+                writeFully(ch, header(), 0);
+            } else {
+                checkHeader(ch);
+            }
+            return ch;
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private List<StatsPoint> readAll() throws IOException {
+        List<StatsPoint> all = new ArrayList<>();
+        if (!Files.exists(file)) return all;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            checkHeader(ch);
+            long count = recordCount(ch);
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(count, 4096) * RECORD_SIZE + RECORD_SIZE);
+            long pos = HEADER_SIZE;
+            long end = HEADER_SIZE + count * RECORD_SIZE;
+            while (pos < end) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity() / RECORD_SIZE * RECORD_SIZE, end - pos));
+                readFully(ch, buf, pos);
+                buf.flip();
+                while (buf.remaining() >= RECORD_SIZE) {
+                    all.add(decode(buf));
+                }
+                pos += buf.limit();
+            }
+        }
+        return all;
+    }
+
+    private void rewrite(List<StatsPoint> points) throws IOException {
+        AtomicFiles.replace(file, tmp -> {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + points.size() * RECORD_SIZE);
+                buf.put(header());
+                for (StatsPoint p : points) {
+                    encode(p, buf);
+                }
+                buf.flip();
+                writeFully(ch, buf, 0);
+            }
+        });
+    }
+
+    /** Индекс первой записи со временем >= millis (двоичный поиск). */
+    private static long lowerBound(FileChannel ch, long millis) throws IOException {
+        long lo = 0;
+        long hi = recordCount(ch);
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (readTime(ch, mid) < millis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Индекс первой записи со временем > millis. */
+    private static long upperBound(FileChannel ch, long millis) throws IOException {
+        return millis == Long.MAX_VALUE ? recordCount(ch) : lowerBound(ch, millis + 1);
+    }
+
+    private static long recordCount(FileChannel ch) throws IOException {
+        // Недописанный «хвост» (сбой во время записи) игнорируется
+        return Math.max(0, (ch.size() - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    private static long readTime(FileChannel ch, long index) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+        readFully(ch, buf, HEADER_SIZE + index * RECORD_SIZE);
+        return buf.flip().getLong();
+    }
+
+    private static StatsPoint readRecord(FileChannel ch, long index) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+        readFully(ch, buf, HEADER_SIZE + index * RECORD_SIZE);
+        return decode(buf.flip());
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putShort(VERSION).putShort((short) GENDERS.length)
+                .flip();
+    }
+
+    private void checkHeader(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(ch, buf, 0);
+        buf.flip();
+        if (buf.getInt() != MAGIC || buf.getShort() != VERSION || buf.getShort() != GENDERS.length) {
+            throw new IOException("Неизвестный формат файла истории статистики: " + file);
+        }
+    }
+
+    private static void encode(StatsPoint point, ByteBuffer buf) {
+        buf.putLong(point.time().toEpochMilli());
+        for (Gender g : GENDERS) {
+            buf.putInt(point.counts().getOrDefault(g, 0));
+        }
+    }
+
+    private static StatsPoint decode(ByteBuffer buf) {
+        Instant time = Instant.ofEpochMilli(buf.getLong());
+        EnumMap<Gender, Integer> counts = new EnumMap<>(Gender.class);
+        for (Gender g : GENDERS) {
+            counts.put(g, buf.getInt());
+        }
+        return new StatsPoint(time, counts);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Неожиданный конец файла истории статистики");
+            pos += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.khalchukov.labs.util;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Атомарная замена файла: содержимое пишется во временный файл рядом
+ * с целевым, после чего временный файл переименовывается поверх целевого.
+ * Сторонний читатель никогда не увидит файл в наполовину записанном состоянии.
+ */
+public class AtomicFiles {
+
+    /** Запись содержимого во временный файл. */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(Path tmp) throws IOException;
+    }
+
+    private AtomicFiles() {}
+
+    /**
+     * Заменяет {@code target} содержимым, которое {@code writer} записывает
+     * во временный файл. Права существующего файла сохраняются.
+     */
+    public static void replace(Path target, ContentWriter writer) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            copyPermissions(target, tmp);
+            writer.writeTo(tmp);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Переносит POSIX-права исходного файла на временный: createTempFile
+     * создаёт файл с правами 0600, и без этого замена «сужала» бы права.
+     * Если исходного файла нет или ФС не поддерживает POSIX — ничего не делает.
+     */
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (!Files.exists(from)) return;
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // не POSIX-система — права остаются по умолчанию
+        }
+    }
+}
@@ -41,11 +41,26 @@ public class CsvParser {
         return characters;
     }
 
+    /**
+     * Разбирает строку импортируемого CSV (см. {@code BulkImportService}).
+     * В отличие от файла хранилища, столбец ID может быть пустым —
+     * такой ID разбирается как 0, новый ID назначит сервис.
+     *
+     * @throws IllegalArgumentException если в строке меньше 8 полей или ID не число
+     */
+    public static Character parseImportLine(String line) {
+        return parseLine(line, true);
+    }
+
     /**
      * Разбирает одну строку CSV в объект Character.
      * Упрощенный парсинг - просто split по запятой.
      */
     private static Character parseLine(String line) {
+        return parseLine(line, false);
+    }
+
+    private static Character parseLine(String line, boolean idOptional) {
         // ПРОСТОЙ split без учета кавычек
         String[] parts = line.split(",", -1); // -1 чтобы сохранить пустые поля в конце
 
@@ -54,7 +69,11 @@ public class CsvParser {
             parts[i] = parts[i].trim();
         }
 
-        int    id           = Integer.parseInt(parts[0]);
+        if (parts.length < 8) {
+            throw new IllegalArgumentException("ожидается не менее 8 полей, получено " + parts.length);
+        }
+
+        int    id           = idOptional && parts[0].isEmpty() ? 0 : Integer.parseInt(parts[0]);
         String name         = parts[1];
         String status       = parts[2];
         String species      = parts[3];
@@ -93,4 +112,13 @@ public class CsvParser {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Записывает список персонажей во временный файл рядом с целевым
+     * и затем атомарно подменяет целевой файл. Сторонний читатель
+     * никогда не увидит файл в наполовину записанном состоянии.
+     */
+    public static void writeAllAtomically(Path path, List<Character> characters) throws IOException {
+        AtomicFiles.replace(path, tmp -> writeAll(tmp, characters));
+    }
+}
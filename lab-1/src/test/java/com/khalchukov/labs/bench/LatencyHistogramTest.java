@@ -0,0 +1,116 @@
+package com.khalchukov.labs.bench;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты лог-линейной гистограммы {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReturnsZeros() {
+        LatencyHistogram h = new LatencyHistogram();
+
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.percentile(50));
+        assertEquals(0, h.percentile(99.9));
+        assertEquals(0, h.getMin());
+        assertEquals(0, h.getMax());
+        assertEquals(0.0, h.getMean());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 0; v < 32; v++) {
+            h.record(v);
+        }
+
+        assertEquals(0, h.percentile(0));
+        assertEquals(15, h.percentile(50));
+        assertEquals(31, h.percentile(100));
+        for (int v = 0; v < 32; v++) {
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(v);
+            assertEquals(v, single.percentile(50), "значение " + v);
+        }
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+
+        assertEquals(1, h.getCount());
+        assertEquals(0, h.percentile(100));
+        assertEquals(0, h.getMin());
+    }
+
+    @Test
+    void largeValuesArePreciseWithinThreePercent() {
+        int n = 1_000_000;
+        LatencyHistogram h = new LatencyHistogram();
+        for (int v = 1; v <= n; v++) {
+            h.record(v * 1_000L);
+        }
+
+        for (double p : new double[] {1, 10, 50, 90, 99, 99.9, 99.99}) {
+            long exact = (long) Math.ceil(n * p / 100.0) * 1_000L;
+            long actual = h.percentile(p);
+            // Перцентиль — верхняя граница корзины: не меньше точного значения
+            assertTrue(actual >= exact, "p" + p + ": " + actual + " < " + exact);
+            assertTrue(actual <= exact * 1.03, "p" + p + ": " + actual + " vs " + exact);
+        }
+        assertEquals(n * 1_000L, h.percentile(100));
+        assertEquals(n * 1_000L, h.getMax());
+        assertEquals(1_000L, h.getMin());
+    }
+
+    @Test
+    void percentileNeverExceedsMax() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(1_000_001);
+        h.record(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, h.percentile(100));
+        assertTrue(h.percentile(50) >= 1_000_001);
+        assertTrue(h.percentile(50) <= 1_030_001);
+    }
+
+    @Test
+    void addMergesAllCounters() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        LatencyHistogram all = new LatencyHistogram();
+        for (int v = 1; v <= 1_000; v++) {
+            (v % 3 == 0 ? a : b).record(v * 37L);
+            all.record(v * 37L);
+        }
+
+        a.add(b);
+        a.add(new LatencyHistogram());
+
+        assertEquals(all.getCount(), a.getCount());
+        assertEquals(all.getMin(), a.getMin());
+        assertEquals(all.getMax(), a.getMax());
+        assertEquals(all.getMean(), a.getMean());
+        for (double p : new double[] {0, 25, 50, 75, 99, 100}) {
+            assertEquals(all.percentile(p), a.percentile(p), "p" + p);
+        }
+    }
+
+    @Test
+    void addIntoEmptyHistogramCopiesMin() {
+        LatencyHistogram empty = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(500);
+
+        empty.add(other);
+
+        assertEquals(500, empty.getMin());
+        assertEquals(500, empty.getMax());
+        assertEquals(1, empty.getCount());
+    }
+}
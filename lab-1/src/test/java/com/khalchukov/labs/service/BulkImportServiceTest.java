@@ -0,0 +1,237 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Character;
+import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.service.BulkImportService.ImportFailedException;
+import com.khalchukov.labs.service.BulkImportService.ImportResult;
+import com.khalchukov.labs.service.BulkImportService.Options;
+import com.khalchukov.labs.util.CsvParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты конвейера массового импорта {@link BulkImportService}.
+ */
+class BulkImportServiceTest {
+
+    /** Мелкие порции и несколько потоков, чтобы порции приходили вразнобой. */
+    private static final Options SMALL = new Options(3, 2, 4, 2, BulkImportService.byNameAndOrigin());
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private CharacterCrudService crud;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csv = dir.resolve("characters.csv");
+        CsvParser.writeAll(csv, List.of(
+                new Character(1, "Rick Sanchez", "Alive", "Human", "", Gender.MALE,
+                        "Earth (C-137)", "Citadel of Ricks", "2017-11-04T18:48:46.250Z"),
+                new Character(7, "Morty Smith", "Alive", "Human", "", Gender.MALE,
+                        "unknown", "Citadel of Ricks", "2017-11-04T18:50:21.651Z")));
+        crud = new CharacterCrudService(csv);
+    }
+
+    @Test
+    void keepsSourceOrderAndAssignsIdsAfterExisting() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add(",Clone " + i + ",Alive,Human,,Male,Earth,Earth,");
+        }
+
+        ImportResult result = new BulkImportService(crud, SMALL).importLines(lines.iterator());
+
+        assertEquals(100, result.read());
+        assertEquals(100, result.imported());
+        assertEquals(0, result.duplicates());
+        assertEquals(0, result.rejected());
+        assertEquals(34, result.batches());
+
+        List<Character> imported = importedRows();
+        assertEquals(100, imported.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Clone " + i, imported.get(i).getName());
+            assertEquals(8 + i, imported.get(i).getId());
+        }
+    }
+
+    @Test
+    void laterCreateContinuesNumberingAfterImport() throws IOException {
+        new BulkImportService(crud, BulkImportService.Options.defaults()).importLines(List.of(
+                ",Birdperson,Alive,Bird-Person,,Male,Bird World,Planet Squanchy,").iterator());
+
+        Character created = crud.create("Tammy", "Alive", "Human", "", Gender.FEMALE, "Earth", "Earth");
+
+        // Импорт резервирует ID только под свои пакеты — без скачка нумерации
+        assertEquals(9, created.getId());
+    }
+
+    @Test
+    void persistsImportedRowsToFile() throws IOException {
+        new BulkImportService(crud, SMALL).importLines(List.of(
+                ",Birdperson,Alive,Bird-Person,,Male,Bird World,Planet Squanchy,").iterator());
+
+        List<Character> fromFile = CsvParser.readAll(csv);
+        assertEquals(3, fromFile.size());
+        assertEquals("Birdperson", fromFile.get(2).getName());
+    }
+
+    @Test
+    void skipsDuplicatesOfExistingAndImportedRows() throws IOException {
+        ImportResult result = new BulkImportService(crud, SMALL).importLines(List.of(
+                ",RICK SANCHEZ,Alive,Human,,Male,Earth (C-137),Earth,",   // уже есть в хранилище
+                ",Rick Sanchez,Alive,Human,,Male,Earth (Replacement),Earth,", // другое происхождение
+                ",Summer Smith,Alive,Human,,Female,Earth,Earth,",
+                ",summer smith,Alive,Human,,Female,Earth,Earth,"          // повтор внутри источника
+        ).iterator());
+
+        assertEquals(4, result.read());
+        assertEquals(2, result.imported());
+        assertEquals(2, result.duplicates());
+        assertEquals(List.of("Rick Sanchez", "Summer Smith"),
+                importedRows().stream().map(Character::getName).toList());
+    }
+
+    @Test
+    void importsEverythingWithoutDedupeKey() throws IOException {
+        ImportResult result = new BulkImportService(crud, SMALL.withDedupeKey(null)).importLines(List.of(
+                ",Rick Sanchez,Alive,Human,,Male,Earth (C-137),Earth,").iterator());
+
+        assertEquals(1, result.imported());
+        assertEquals(0, result.duplicates());
+    }
+
+    @Test
+    void rejectsInvalidRowsAndKeepsTheRest() throws IOException {
+        ImportResult result = new BulkImportService(crud, SMALL).importLines(List.of(
+                ",Jerry Smith,Alive,Human,,Male,Earth,Earth,",
+                ",,Alive,Human,,Male,Earth,Earth,",               // пустое имя
+                "abc,Beth Smith,Alive,Human,,Female,Earth,Earth,", // ID не число
+                ",Squanchy,Alive",                                  // мало полей
+                "",                                                 // пустая строка пропускается
+                ",Beth Smith,,,,,,,"                               // значения по умолчанию
+        ).iterator());
+
+        assertEquals(6, result.read());
+        assertEquals(2, result.imported());
+        assertEquals(3, result.rejected());
+
+        List<Character> imported = importedRows();
+        assertEquals("Jerry Smith", imported.get(0).getName());
+        Character beth = imported.get(1);
+        assertEquals("Beth Smith", beth.getName());
+        assertEquals(Gender.UNKNOWN, beth.getGender());
+        assertEquals("unknown", beth.getStatus());
+        assertEquals("unknown", beth.getOriginName());
+        assertFalse(beth.getCreated().isBlank());
+    }
+
+    @Test
+    void rejectsParsedCharactersThatWouldBreakCsv() throws IOException {
+        ImportResult result = new BulkImportService(crud, SMALL).importCharacters(Stream.of(
+                new Character(0, "Mr. Poopybutthole", "Alive", "Poopybutthole", "", Gender.MALE,
+                        "unknown", "Earth", ""),
+                new Character(0, "Evil, Morty", "Alive", "Human", "", Gender.MALE,
+                        "unknown", "Citadel", "")));
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.rejected());
+    }
+
+    @Test
+    void emptySourceChangesNothing() throws IOException {
+        long versionBefore = crud.snapshot().version();
+        byte[] fileBefore = Files.readAllBytes(csv);
+
+        ImportResult result = new BulkImportService(crud, SMALL).importLines(List.<String>of().iterator());
+
+        assertEquals(new ImportResult(0, 0, 0, 0, 0), result);
+        assertEquals(versionBefore, crud.snapshot().version());
+        assertEquals(2, crud.snapshot().size());
+        assertTrue(Arrays.equals(fileBefore, Files.readAllBytes(csv)));
+    }
+
+    @Test
+    void failureKeepsCommittedBatchesAndReportsThem() throws IOException {
+        Options failing = new Options(2, 1, 2, 2, c -> {
+            if (c.getName().equals("Boom")) {
+                throw new IllegalStateException("сбой ключа");
+            }
+            return c.getName();
+        });
+        List<String> lines = List.of(
+                ",A,Alive,Human,,Male,Earth,Earth,",
+                ",B,Alive,Human,,Male,Earth,Earth,",
+                ",C,Alive,Human,,Male,Earth,Earth,",
+                ",D,Alive,Human,,Male,Earth,Earth,",
+                ",E,Alive,Human,,Male,Earth,Earth,",
+                ",Boom,Alive,Human,,Male,Earth,Earth,",
+                ",F,Alive,Human,,Male,Earth,Earth,");
+
+        ImportFailedException e = assertThrows(ImportFailedException.class,
+                () -> new BulkImportService(crud, failing).importLines(lines.iterator()));
+
+        ImportResult partial = e.partialResult();
+        assertEquals(4, partial.imported());
+        assertEquals(2, partial.batches());
+        assertTrue(e.getMessage().contains("4"), e.getMessage());
+        assertEquals(List.of("A", "B", "C", "D"),
+                importedRows().stream().map(Character::getName).toList());
+    }
+
+    @Test
+    void readerStaysBoundedAheadOfCommitter() throws IOException {
+        // Источник считает вытянутые строки, ключ дедупликации — обработанные фиксацией
+        int total = 20_000;
+        AtomicInteger pulled = new AtomicInteger();
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        Iterator<String> source = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get() < total;
+            }
+
+            @Override
+            public String next() {
+                return ",Row " + pulled.getAndIncrement() + ",Alive,Human,,Male,Earth,Earth,";
+            }
+        };
+        Options options = new Options(1_000, 10, 2, 2, c -> {
+            maxAhead.accumulateAndGet(pulled.get() - committed.getAndIncrement(), Math::max);
+            return c.getName();
+        });
+
+        ImportResult result = new BulkImportService(crud, options).importLines(source);
+
+        assertEquals(total, result.imported());
+        // В полёте не больше 2 × 2 + 2 = 6 порций, плюс обрабатываемая и заполняемая читателем
+        assertTrue(maxAhead.get() <= 8 * 10, "читатель опередил фиксацию на " + maxAhead.get());
+    }
+
+    // ──────────────────── Вспомогательные методы ────────────────────
+
+    /** Добавленные импортом персонажи (ID > 7) в порядке ID. */
+    private List<Character> importedRows() throws IOException {
+        return crud.findAll().stream()
+                .filter(c -> c.getId() > 7)
+                .sorted(Comparator.comparingInt(Character::getId))
+                .toList();
+    }
+}
@@ -0,0 +1,216 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Character;
+import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.util.CsvParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты CRUD-сервиса на неизменяемых версиях {@link CharacterSnapshot}.
+ */
+class CharacterCrudServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private CharacterCrudService crud;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csv = dir.resolve("data").resolve("characters.csv");
+        Files.createDirectories(csv.getParent());
+        CsvParser.writeAll(csv, List.of(
+                character(1, "Rick Sanchez", Gender.MALE),
+                character(2, "Morty Smith", Gender.MALE),
+                character(3, "Summer Smith", Gender.FEMALE)));
+        crud = new CharacterCrudService(csv);
+    }
+
+    // ──────────────────── Сохранение в файл ────────────────────
+
+    @Test
+    void createIsPersisted() throws IOException {
+        Character created = crud.create("Birdperson", "Alive", "Bird-Person", "",
+                Gender.MALE, "Bird World", "Planet Squanchy");
+
+        assertEquals(4, created.getId());
+        Character stored = fromFile(4).orElseThrow();
+        assertEquals("Birdperson", stored.getName());
+        assertEquals("Planet Squanchy", stored.getLocationName());
+    }
+
+    @Test
+    void updateIsPersisted() throws IOException {
+        Optional<Character> updated = crud.update(2, "Evil Morty", null, null, null,
+                null, null, "Citadel of Ricks");
+
+        assertEquals("Evil Morty", updated.orElseThrow().getName());
+        Character stored = fromFile(2).orElseThrow();
+        assertEquals("Evil Morty", stored.getName());
+        assertEquals("Alive", stored.getStatus());
+        assertEquals("Citadel of Ricks", stored.getLocationName());
+    }
+
+    @Test
+    void updateOfMissingIdChangesNothing() throws IOException {
+        long version = crud.snapshot().version();
+
+        assertTrue(crud.update(42, "Nobody", null, null, null, null, null, null).isEmpty());
+        assertEquals(version, crud.snapshot().version());
+    }
+
+    @Test
+    void deleteIsPersisted() throws IOException {
+        assertTrue(crud.delete(1));
+        assertFalse(crud.delete(1));
+
+        assertTrue(fromFile(1).isEmpty());
+        assertEquals(2, CsvParser.readAll(csv).size());
+    }
+
+    // ──────────────────── Версии ────────────────────
+
+    @Test
+    void snapshotDoesNotChangeAfterWrites() throws IOException {
+        CharacterSnapshot before = crud.snapshot();
+
+        crud.create("Jerry Smith", "Alive", "Human", "", Gender.MALE, "Earth", "Earth");
+        crud.update(1, "Rick C-137", null, null, null, null, null, null);
+        crud.delete(3);
+
+        assertEquals(3, before.size());
+        assertEquals("Rick Sanchez", before.findById(1).orElseThrow().getName());
+        assertTrue(before.findById(3).isPresent());
+        assertTrue(before.findById(4).isEmpty());
+
+        CharacterSnapshot after = crud.snapshot();
+        assertEquals(before.version() + 3, after.version());
+        assertEquals("Rick C-137", after.findById(1).orElseThrow().getName());
+        assertTrue(after.findById(3).isEmpty());
+    }
+
+    @Test
+    void snapshotCharactersAreFrozen() throws IOException {
+        Character shared = crud.snapshot().characters().get(0);
+
+        assertTrue(shared.isFrozen());
+        assertThrows(UnsupportedOperationException.class, () -> shared.setName("Hacked"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> crud.snapshot().characters().add(character(9, "Extra", Gender.UNKNOWN)));
+    }
+
+    @Test
+    void copiesFromFindAllAndFindByIdAreMutable() throws IOException {
+        Character fromList = crud.findAll().get(0);
+        Character byId = crud.findById(2).orElseThrow();
+
+        fromList.setName("Changed");
+        byId.setGender(Gender.GENDERLESS);
+
+        assertFalse(fromList.isFrozen());
+        assertEquals("Rick Sanchez", crud.snapshot().findById(1).orElseThrow().getName());
+        assertEquals(Gender.MALE, crud.snapshot().findById(2).orElseThrow().getGender());
+    }
+
+    @Test
+    void failedWriteDoesNotPublishNewVersion() throws IOException {
+        CharacterSnapshot before = crud.snapshot();
+        // Каталог набора пропал — временный файл для атомарной записи не создать
+        Files.delete(csv);
+        Files.delete(csv.getParent());
+
+        assertThrows(IOException.class, () -> crud.create("Ghost", "Dead", "Human", "",
+                Gender.UNKNOWN, "Earth", "Earth"));
+        assertThrows(IOException.class, () -> crud.delete(1));
+
+        assertSame(before, crud.snapshot());
+        assertTrue(crud.findById(1).isPresent());
+    }
+
+    // ──────────────────── Резервирование ID ────────────────────
+
+    @Test
+    void createSkipsReservedIds() throws IOException {
+        int first = crud.allocateIds(5);
+
+        Character created = crud.create("Jerry Smith", "Alive", "Human", "", Gender.MALE, "Earth", "Earth");
+
+        assertEquals(4, first);
+        assertEquals(9, created.getId());
+    }
+
+    @Test
+    void reservedIdsStayFreeForCreateAll() throws IOException {
+        int first = crud.allocateIds(2);
+        crud.create("Jerry Smith", "Alive", "Human", "", Gender.MALE, "Earth", "Earth");
+        int second = crud.allocateIds(2);
+
+        crud.createAll(List.of(character(first, "Clone A", Gender.MALE),
+                character(first + 1, "Clone B", Gender.MALE)));
+        crud.createAll(List.of(character(second, "Clone C", Gender.FEMALE)));
+
+        assertEquals(7, second);
+        assertEquals(7, crud.snapshot().size());
+        assertEquals(7, CsvParser.readAll(csv).size());
+    }
+
+    @Test
+    void createAllRejectsTakenId() throws IOException {
+        long version = crud.snapshot().version();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> crud.createAll(List.of(character(2, "Morty Clone", Gender.MALE))));
+        assertEquals(version, crud.snapshot().version());
+    }
+
+    // ──────────────────── Загрузка ────────────────────
+
+    @Test
+    void duplicateIdsAreRefusedAndFileIsKept() throws IOException {
+        Files.writeString(csv, Character.csvHeader() + "\n"
+                + "1,Rick Sanchez,Alive,Human,,Male,Earth,Earth,\n"
+                + "1,Rick Prime,Alive,Human,,Male,Earth,Earth,\n");
+        String content = Files.readString(csv);
+        CharacterCrudService service = new CharacterCrudService(csv);
+
+        IOException e = assertThrows(IOException.class, service::snapshot);
+
+        assertTrue(e.getMessage().contains("[1]"), e.getMessage());
+        assertThrows(IOException.class, service::snapshot);
+        assertEquals(content, Files.readString(csv));
+    }
+
+    @Test
+    void rowsWithoutIdAreSkipped() throws IOException {
+        Files.writeString(csv, Character.csvHeader() + "\n"
+                + ",No Id,Alive,Human,,Male,Earth,Earth,\n"
+                + "5,Squanchy,Alive,Cat-Person,,Male,Squanch,Squanch,\n");
+
+        CharacterSnapshot snap = new CharacterCrudService(csv).snapshot();
+
+        assertEquals(1, snap.size());
+        assertEquals("Squanchy", snap.findById(5).orElseThrow().getName());
+    }
+
+    // ──────────────────── Вспомогательные методы ────────────────────
+
+    private Optional<Character> fromFile(int id) throws IOException {
+        return CsvParser.readAll(csv).stream().filter(c -> c.getId() == id).findFirst();
+    }
+
+    private static Character character(int id, String name, Gender gender) {
+        return new Character(id, name, "Alive", "Human", "", gender,
+                "Earth (C-137)", "Earth", "2017-11-04T18:48:46.250Z");
+    }
+}
@@ -0,0 +1,148 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Character;
+import com.khalchukov.labs.model.Gender;
+import com.khalchukov.labs.util.CsvParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты вытеснения наборов данных из {@link DatasetRegistry}.
+ */
+class DatasetRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private Path a;
+    private Path b;
+    private Path c;
+
+    /** Оценочный размер одного набора (все три одинаковые). */
+    private long datasetBytes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        a = writeDataset("a.csv", 20);
+        b = writeDataset("b.csv", 20);
+        c = writeDataset("c.csv", 20);
+        datasetBytes = new CharacterCrudService(a).snapshot().estimatedBytes();
+    }
+
+    @Test
+    void evictsLeastFrequentlyUsedWhenOverBudget() throws IOException {
+        DatasetRegistry registry = new DatasetRegistry(datasetBytes * 5 / 2);
+
+        registry.get(a);
+        registry.get(a);
+        registry.get(a);
+        registry.get(b);
+        registry.get(c);
+
+        // У b меньше всего обращений — он уходит первым
+        assertResident(registry, a, c);
+        assertTrue(registry.residentBytes() <= datasetBytes * 5 / 2);
+    }
+
+    @Test
+    void inflationAgesOutOnceHotDataset() throws IOException {
+        DatasetRegistry registry = new DatasetRegistry(datasetBytes * 5 / 2);
+
+        registry.get(a);
+        registry.get(a);
+        registry.get(a);
+        registry.get(b);
+        registry.get(c);      // вытесняет b, инфляция растёт до его приоритета
+        assertResident(registry, a, c);
+
+        registry.get(b);      // b: 2 обращения + инфляция — выше, чем у c и a
+        assertResident(registry, a, b);
+
+        registry.get(c);      // c тоже выше a: a больше не обращались, и он «остыл»
+        assertResident(registry, b, c);
+    }
+
+    @Test
+    void evictsLargerDatasetAtEqualFrequency() throws IOException {
+        Path big = writeDataset("big.csv", 60);
+        long bigBytes = new CharacterCrudService(big).snapshot().estimatedBytes();
+        DatasetRegistry registry = new DatasetRegistry(bigBytes + datasetBytes * 3 / 2);
+
+        registry.get(big);
+        registry.get(a);
+        registry.get(b);
+
+        // При равной частоте приоритет выше у меньшего набора
+        assertResident(registry, a, b);
+    }
+
+    @Test
+    void datasetLargerThanBudgetStaysAlone() throws IOException {
+        DatasetRegistry registry = new DatasetRegistry(datasetBytes / 2);
+
+        registry.get(a);
+        registry.get(b);
+
+        assertResident(registry, b);
+    }
+
+    @Test
+    void reloadThroughHeldServiceIsAccounted() throws IOException {
+        DatasetRegistry registry = new DatasetRegistry(datasetBytes * 5 / 2);
+
+        CharacterCrudService serviceA = registry.get(a);
+        registry.get(b);
+        registry.get(b);
+        registry.get(c);
+        registry.get(c);
+        assertResident(registry, b, c);
+        assertFalse(serviceA.isLoaded());
+
+        // Обращение в обход get(): сервис сам перечитывает файл, реестр это учитывает
+        serviceA.snapshot();
+
+        assertEquals(2, registry.residentDatasets().size());
+        assertTrue(registry.residentDatasets().contains(a.toAbsolutePath().normalize()));
+        assertTrue(registry.residentBytes() <= datasetBytes * 5 / 2);
+    }
+
+    @Test
+    void explicitEvictReleasesBudget() throws IOException {
+        DatasetRegistry registry = new DatasetRegistry(datasetBytes * 5 / 2);
+
+        registry.get(a);
+        registry.evict(a);
+
+        assertEquals(0, registry.residentBytes());
+        assertTrue(registry.residentDatasets().isEmpty());
+    }
+
+    // ──────────────────── Вспомогательные методы ────────────────────
+
+    private void assertResident(DatasetRegistry registry, Path... expected) {
+        List<Path> resident = registry.residentDatasets();
+        assertEquals(expected.length, resident.size(), "в памяти: " + resident);
+        for (Path p : expected) {
+            assertTrue(resident.contains(p.toAbsolutePath().normalize()), "нет в памяти: " + p);
+        }
+    }
+
+    private Path writeDataset(String name, int size) throws IOException {
+        List<Character> characters = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            characters.add(new Character(100 + i, "Rick Sanchez", "Alive", "Human", "",
+                    Gender.MALE, "Earth", "Citadel", "2017-11-04T18:48:46.250Z"));
+        }
+        Path path = dir.resolve(name);
+        CsvParser.writeAll(path, characters);
+        return path;
+    }
+}
@@ -0,0 +1,268 @@
+package com.khalchukov.labs.service;
+
+import com.khalchukov.labs.model.Gender;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты бинарной истории статистики {@link GenderStatsHistory}.
+ */
+class GenderStatsHistoryTest {
+
+    /** Заголовок файла и размер записи: время (8) + по 4 байта на каждый Gender. */
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 8 + 4 * Gender.values().length;
+
+    /** Начало ряда: в пределах срока хранения по умолчанию, на границе часа. */
+    private static final Instant T0 = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofDays(30));
+
+    @TempDir
+    Path dir;
+
+    // ──────────────────── Запросы ────────────────────
+
+    @Test
+    void emptyHistoryHasNoPoints() throws IOException {
+        GenderStatsHistory history = GenderStatsHistory.withDefaults(dir.resolve("h.bin"));
+
+        assertEquals(0, history.size());
+        assertTrue(history.latest().isEmpty());
+        assertTrue(history.at(T0).isEmpty());
+        assertTrue(history.firstAfter(T0).isEmpty());
+        assertTrue(history.range(T0, T0.plusSeconds(60)).isEmpty());
+        assertTrue(history.delta(T0, T0.plusSeconds(60)).isEmpty());
+    }
+
+    @Test
+    void atReturnsLastPointNotAfterTime() throws IOException {
+        GenderStatsHistory history = historyWithPointsAt(0, 10, 20);
+
+        assertTrue(history.at(minutes(-1)).isEmpty());
+        assertEquals(minutes(0), history.at(minutes(0)).orElseThrow().time());
+        assertEquals(minutes(0), history.at(minutes(9)).orElseThrow().time());
+        assertEquals(minutes(10), history.at(minutes(10)).orElseThrow().time());
+        assertEquals(minutes(20), history.at(minutes(500)).orElseThrow().time());
+        assertEquals(minutes(20), history.latest().orElseThrow().time());
+    }
+
+    @Test
+    void firstAfterReturnsFirstPointNotBeforeTime() throws IOException {
+        GenderStatsHistory history = historyWithPointsAt(0, 10, 20);
+
+        assertEquals(minutes(0), history.firstAfter(minutes(-1)).orElseThrow().time());
+        assertEquals(minutes(10), history.firstAfter(minutes(10)).orElseThrow().time());
+        assertEquals(minutes(20), history.firstAfter(minutes(11)).orElseThrow().time());
+        assertTrue(history.firstAfter(minutes(21)).isEmpty());
+    }
+
+    @Test
+    void rangeIncludesBothBounds() throws IOException {
+        GenderStatsHistory history = historyWithPointsAt(0, 10, 20, 30);
+
+        assertEquals(List.of(minutes(10), minutes(20)), times(history.range(minutes(10), minutes(20))));
+        assertEquals(List.of(minutes(10), minutes(20)), times(history.range(minutes(5), minutes(25))));
+        assertEquals(List.of(minutes(0)), times(history.range(minutes(0), minutes(0))));
+        assertTrue(history.range(minutes(11), minutes(19)).isEmpty());
+        assertTrue(history.range(minutes(20), minutes(10)).isEmpty());
+    }
+
+    @Test
+    void deltaComparesFirstAndLastPointOfInterval() throws IOException {
+        GenderStatsHistory history = GenderStatsHistory.withDefaults(dir.resolve("h.bin"));
+        history.append(T0, counts(10, 5));
+        history.append(T0.plus(Duration.ofHours(12)), counts(12, 5));
+        history.append(T0.plus(Duration.ofDays(2)), counts(20, 3));
+
+        GenderStatsHistory.StatsDelta delta = history.delta(T0, T0.plus(Duration.ofDays(2))).orElseThrow();
+
+        assertEquals(10, delta.change(Gender.MALE));
+        assertEquals(-2, delta.change(Gender.FEMALE));
+        assertEquals(8, delta.totalChange());
+        assertEquals(5.0, delta.perDay(Gender.MALE));
+        assertTrue(history.delta(T0.plusSeconds(1), T0.plus(Duration.ofHours(1))).isEmpty());
+    }
+
+    @Test
+    void appendKeepsTimeMonotonic() throws IOException {
+        GenderStatsHistory history = historyWithPointsAt(10);
+
+        GenderStatsHistory.StatsPoint point = history.append(minutes(5), counts(1, 1));
+
+        assertEquals(minutes(10), point.time());
+        assertEquals(List.of(minutes(10), minutes(10)), times(history.range(minutes(0), minutes(20))));
+    }
+
+    // ──────────────────── Файл ────────────────────
+
+    @Test
+    void partialTrailingRecordIsIgnoredAndOverwritten() throws IOException {
+        GenderStatsHistory history = historyWithPointsAt(0, 10);
+        Path file = history.getFile();
+        assertEquals(HEADER_SIZE + 2L * RECORD_SIZE, Files.size(file));
+
+        // Имитация сбоя посреди записи: половина следующей записи
+        Files.write(file, new byte[RECORD_SIZE / 2], StandardOpenOption.APPEND);
+
+        assertEquals(2, history.size());
+        assertEquals(minutes(10), history.latest().orElseThrow().time());
+
+        history.append(minutes(20), counts(7, 7));
+
+        assertEquals(3, history.size());
+        assertEquals(HEADER_SIZE + 3L * RECORD_SIZE, Files.size(file));
+        assertEquals(7, history.latest().orElseThrow().counts().get(Gender.MALE).intValue());
+    }
+
+    @Test
+    void foreignFileIsRejected() throws IOException {
+        Path file = dir.resolve("h.bin");
+        Files.writeString(file, "not a history file");
+
+        GenderStatsHistory history = GenderStatsHistory.withDefaults(file);
+
+        assertThrows(IOException.class, history::size);
+        assertThrows(IOException.class, () -> history.append(T0, counts(1, 1)));
+    }
+
+    @Test
+    void datasetsGetSeparateFiles() {
+        Path a = GenderStatsHistory.forDataset(dir, dir.resolve("a/characters.csv")).getFile();
+        Path b = GenderStatsHistory.forDataset(dir, dir.resolve("b/characters.csv")).getFile();
+        Path a2 = GenderStatsHistory.forDataset(dir, dir.resolve("b/../a/characters.csv")).getFile();
+
+        assertNotEquals(a, b);
+        assertEquals(a, a2);
+        assertEquals(dir, a.getParent());
+    }
+
+    // ──────────────────── Уплотнение ────────────────────
+
+    @Test
+    void compactDropsExpiredPoints() throws IOException {
+        GenderStatsHistory history = new GenderStatsHistory(dir.resolve("h.bin"), 1024 * 1024,
+                Duration.ofDays(30), Duration.ofDays(1), Duration.ofHours(1));
+        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        Instant old = now.minus(Duration.ofDays(3));
+        Instant recent = now.minus(Duration.ofHours(2));
+        history.append(old, counts(1, 0));
+        history.append(old.plusSeconds(60), counts(2, 0));
+        history.append(recent, counts(3, 0));
+
+        // Почти месяц спустя: old вышли за срок хранения, recent — ещё нет
+        history.compact(recent.plus(Duration.ofDays(30)).minusSeconds(1));
+
+        assertEquals(List.of(recent), times(history.range(Instant.EPOCH, now)));
+    }
+
+    @Test
+    void compactDownsamplesOnlyOutsideFullResolution() throws IOException {
+        GenderStatsHistory history = new GenderStatsHistory(dir.resolve("h.bin"), 1024 * 1024,
+                Duration.ofDays(30), Duration.ofDays(1), Duration.ofHours(1));
+        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        Instant old = now.minus(Duration.ofDays(3));
+        Instant fresh = now.minus(Duration.ofHours(2));
+        for (Instant t : List.of(old, old.plus(Duration.ofMinutes(10)), old.plus(Duration.ofMinutes(20)),
+                old.plus(Duration.ofMinutes(70)), fresh, fresh.plus(Duration.ofMinutes(1)))) {
+            history.append(t, counts(1, 0));
+        }
+
+        history.compact(now);
+
+        assertEquals(List.of(old.plus(Duration.ofMinutes(20)), old.plus(Duration.ofMinutes(70)),
+                        fresh, fresh.plus(Duration.ofMinutes(1))),
+                times(history.range(Instant.EPOCH, now)));
+    }
+
+    @Test
+    void appendCompactsOnceOldestRecordExpires() throws IOException {
+        GenderStatsHistory history = new GenderStatsHistory(dir.resolve("h.bin"), 1024 * 1024,
+                Duration.ofDays(30), Duration.ofDays(1), Duration.ofHours(1));
+        Instant now = Instant.now();
+        Instant expired = now.minus(Duration.ofDays(31));
+
+        history.append(expired, counts(1, 0));
+        history.append(now.minus(Duration.ofMinutes(1)), counts(2, 0));
+
+        // Файл далеко не заполнен, но запись старше срока хранения удалена
+        assertEquals(1, history.size());
+        assertTrue(history.at(expired).isEmpty());
+    }
+
+    @Test
+    void tooSmallLimitIsRejected() {
+        long minimum = 2L * (HEADER_SIZE + RECORD_SIZE);
+
+        assertThrows(IllegalArgumentException.class, () -> new GenderStatsHistory(dir.resolve("h.bin"),
+                minimum - 1, Duration.ofDays(1), Duration.ofHours(1), Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void smallestLimitKeepsNewestRecord() throws IOException {
+        GenderStatsHistory history = new GenderStatsHistory(dir.resolve("h.bin"),
+                2L * (HEADER_SIZE + RECORD_SIZE), Duration.ofDays(1), Duration.ofHours(1), Duration.ofMinutes(1));
+        Instant start = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        for (int i = 0; i < 3; i++) {
+            history.append(start.plusSeconds(i), counts(i, 0));
+        }
+
+        assertEquals(1, history.size());
+        assertEquals(2, history.latest().orElseThrow().counts().get(Gender.MALE).intValue());
+    }
+
+    @Test
+    void appendOverLimitTrimsToHalfOfLimit() throws IOException {
+        long maxBytes = HEADER_SIZE + 10L * RECORD_SIZE;
+        GenderStatsHistory history = new GenderStatsHistory(dir.resolve("h.bin"), maxBytes,
+                Duration.ofDays(365), Duration.ofDays(7), Duration.ofHours(1));
+        Instant start = Instant.now().minus(Duration.ofMinutes(30)).truncatedTo(ChronoUnit.MILLIS);
+
+        for (int i = 0; i < 11; i++) {
+            history.append(start.plusSeconds(i), counts(i, 0));
+        }
+
+        // После уплотнения файл не больше половины лимита, остаются самые новые записи
+        assertTrue(Files.size(history.getFile()) <= maxBytes / 2);
+        long kept = history.size();
+        assertEquals((maxBytes / 2 - HEADER_SIZE) / RECORD_SIZE, kept);
+        assertEquals(10, history.latest().orElseThrow().counts().get(Gender.MALE).intValue());
+        assertEquals(start.plusSeconds(11 - kept), history.firstAfter(Instant.EPOCH).orElseThrow().time());
+    }
+
+    // ──────────────────── Вспомогательные методы ────────────────────
+
+    private GenderStatsHistory historyWithPointsAt(int... minuteOffsets) throws IOException {
+        GenderStatsHistory history = GenderStatsHistory.withDefaults(dir.resolve("h.bin"));
+        for (int m : minuteOffsets) {
+            history.append(minutes(m), counts(m, 0));
+        }
+        return history;
+    }
+
+    private static Instant minutes(int offset) {
+        return T0.plus(Duration.ofMinutes(offset));
+    }
+
+    private static EnumMap<Gender, Integer> counts(int male, int female) {
+        EnumMap<Gender, Integer> counts = new EnumMap<>(Gender.class);
+        counts.put(Gender.MALE, male);
+        counts.put(Gender.FEMALE, female);
+        return counts;
+    }
+
+    private static List<Instant> times(List<GenderStatsHistory.StatsPoint> points) {
+        return points.stream().map(GenderStatsHistory.StatsPoint::time).toList();
+    }
+}